@@ -1,15 +1,37 @@
 package com.example.yourprojectname.controller;
 
+import com.example.yourprojectname.config.AuthenticationInterceptor;
 import com.example.yourprojectname.model.Admin;
+import com.example.yourprojectname.service.AppointmentExportService;
+import com.example.yourprojectname.service.AppointmentReportService;
+import com.example.yourprojectname.service.AuthenticatedUser;
 import com.example.yourprojectname.service.Service; // Import the central Service class
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST Controller for handling Admin login operations and issuing tokens.
@@ -20,10 +42,20 @@ public class AdminController {
 
     // Autowire the central Service class for business logic
     private final Service service;
+    private final AppointmentReportService reportService;
+    private final AppointmentExportService exportService;
+
+    // Widest range accepted by the monthly report, in months
+    private static final int MAX_REPORT_MONTHS = 120;
+
+    // Buffer between the CSV writer and the response (or gzip) stream
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
 
     @Autowired
-    public AdminController(Service service) {
+    public AdminController(Service service, AppointmentReportService reportService, AppointmentExportService exportService) {
         this.service = service;
+        this.reportService = reportService;
+        this.exportService = exportService;
     }
 
     /**
@@ -39,4 +71,198 @@ public class AdminController {
         // Call the validateAdmin method from the Service class
         return service.validateAdmin(receivedAdmin);
     }
+
+    /**
+     * Logs the admin out by revoking the token sent in the Authorization header.
+     * Endpoint: POST /api/v1/admin/logout
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, String>> adminLogout(HttpServletRequest request) {
+        return service.logout(AuthenticationInterceptor.resolveToken(request));
+    }
+
+    /**
+     * Returns hit/miss statistics of the in-memory caches.
+     * Endpoint: GET /api/v1/admin/cache-stats
+     *
+     * @param principal The authenticated admin (resolved once from the Authorization header).
+     * @return ResponseEntity containing the cache statistics or an error message.
+     */
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats(
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
+
+        // 1. Validate Token (Admin only)
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
+        if (validationError != null) {
+            return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
+        }
+
+        // 2. Collect statistics
+        return new ResponseEntity<>(service.getCacheStats(), HttpStatus.OK);
+    }
+
+    /**
+     * Returns the number of scheduled, completed and cancelled appointments per month.
+     * Served from in-memory rollups; defaults to the last 12 months including the current one.
+     * Endpoint: GET /api/v1/admin/reports/monthly?from=yyyy-MM&to=yyyy-MM&specialty=...
+     *
+     * @param from The first month (optional).
+     * @param to The last month (optional, defaults to the current month).
+     * @param specialty The doctor specialty to report on (optional, all specialties if omitted).
+     * @param principal The authenticated admin (resolved once from the Authorization header).
+     * @return ResponseEntity containing the report or an error message.
+     */
+    @GetMapping("/reports/monthly")
+    public ResponseEntity<Map<String, Object>> getMonthlyReport(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(required = false) String specialty,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
+
+        // 1. Validate Token (Admin only)
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
+        if (validationError != null) {
+            return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
+        }
+
+        // 2. Resolve and check the month range
+        YearMonth end = to != null ? to : YearMonth.now();
+        YearMonth start = from != null ? from : end.minusMonths(11);
+        if (!isValidReportRange(start, end)) {
+            return new ResponseEntity<>(
+                    Collections.singletonMap("error", "Invalid month range (at most " + MAX_REPORT_MONTHS + " months)."),
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        // 3. Build the report
+        return new ResponseEntity<>(reportService.getMonthlyReport(start, end, blankToNull(specialty)), HttpStatus.OK);
+    }
+
+    /**
+     * Same report as getMonthlyReport, as a CSV download.
+     * Endpoint: GET /api/v1/admin/reports/monthly/csv?from=yyyy-MM&to=yyyy-MM&specialty=...
+     *
+     * @param from The first month (optional).
+     * @param to The last month (optional, defaults to the current month).
+     * @param specialty The doctor specialty to report on (optional, all specialties if omitted).
+     * @param principal The authenticated admin (resolved once from the Authorization header).
+     * @return The CSV file or an error message.
+     */
+    @GetMapping("/reports/monthly/csv")
+    public ResponseEntity<?> exportMonthlyReport(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(required = false) String specialty,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
+
+        // 1. Validate Token (Admin only)
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
+        if (validationError != null) {
+            return validationError;
+        }
+
+        // 2. Resolve and check the month range
+        YearMonth end = to != null ? to : YearMonth.now();
+        YearMonth start = from != null ? from : end.minusMonths(11);
+        if (!isValidReportRange(start, end)) {
+            return new ResponseEntity<>(
+                    Collections.singletonMap("error", "Invalid month range (at most " + MAX_REPORT_MONTHS + " months)."),
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        // 3. Write the CSV
+        String specialtyFilter = blankToNull(specialty);
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            exportService.writeMonthlyReportCsv(start, end, specialtyFilter, writer);
+        };
+        return csvResponse("monthly-report-" + start + "-to-" + end + ".csv", false, body);
+    }
+
+    /**
+     * Recomputes the monthly report rollups from the appointments table.
+     * Endpoint: POST /api/v1/admin/reports/monthly/rebuild
+     *
+     * @param principal The authenticated admin (resolved once from the Authorization header).
+     * @return ResponseEntity containing rebuild statistics or an error message.
+     */
+    @PostMapping("/reports/monthly/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildMonthlyReport(
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
+
+        // 1. Validate Token (Admin only)
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
+        if (validationError != null) {
+            return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
+        }
+
+        // 2. Rebuild
+        return new ResponseEntity<>(reportService.rebuild(), HttpStatus.OK);
+    }
+
+    /**
+     * Exports every appointment in a date range as CSV, streamed from a database cursor so the
+     * size of the export does not affect memory use. With gzip=true the CSV is compressed on the fly.
+     * Endpoint: GET /api/v1/admin/export/appointments?from=yyyy-MM-dd&to=yyyy-MM-dd&specialty=...&gzip=true|false
+     *
+     * @param from The first date (inclusive).
+     * @param to The last date (inclusive).
+     * @param specialty The doctor specialty to export (optional, all specialties if omitted).
+     * @param gzip Whether to send the file gzip-compressed (appointments-....csv.gz).
+     * @param principal The authenticated admin (resolved once from the Authorization header).
+     * @return The CSV file or an error message.
+     */
+    @GetMapping("/export/appointments")
+    public ResponseEntity<?> exportAppointments(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String specialty,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
+
+        // 1. Validate Token (Admin only)
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
+        if (validationError != null) {
+            return validationError;
+        }
+
+        if (from.isAfter(to)) {
+            return new ResponseEntity<>(
+                    Collections.singletonMap("error", "'from' must not be after 'to'."),
+                    HttpStatus.BAD_REQUEST);
+        }
+
+        // 2. Stream the CSV (through gzip if requested); writes block while the client is slow to read
+        String specialtyFilter = blankToNull(specialty);
+        StreamingResponseBody body = out -> {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, EXPORT_BUFFER_SIZE) : null;
+            OutputStream target = compressed != null ? compressed : out;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+            exportService.writeAppointmentsCsv(from, to, specialtyFilter, writer);
+            if (compressed != null) {
+                compressed.finish();
+            }
+        };
+        return csvResponse("appointments-" + from + "-to-" + to + ".csv", gzip, body);
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Private Helpers ---
+    // -------------------------------------------------------------------------
+
+    private static boolean isValidReportRange(YearMonth start, YearMonth end) {
+        return !start.isAfter(end) && !start.plusMonths(MAX_REPORT_MONTHS).isBefore(end);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private static ResponseEntity<StreamingResponseBody> csvResponse(String filename, boolean gzip, StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + (gzip ? ".gz" : "") + "\"")
+                .body(body);
+    }
 }
@@ -2,15 +2,24 @@ package com.example.yourprojectname.controller;
 
 import com.example.yourprojectname.model.Appointment;
 import com.example.yourprojectname.service.AppointmentService;
+import com.example.yourprojectname.service.AuthenticatedUser;
+import com.example.yourprojectname.service.BookingResult;
 import com.example.yourprojectname.service.Service; // Central validation/coordination service
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -20,13 +29,18 @@ import java.util.Map;
 @RequestMapping("/appointments")
 public class AppointmentController {
 
+    // Largest number of appointments accepted by the batch booking endpoint
+    private static final int MAX_BATCH_SIZE = 100;
+
     private final AppointmentService appointmentService;
     private final Service service;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public AppointmentController(AppointmentService appointmentService, Service service) {
+    public AppointmentController(AppointmentService appointmentService, Service service, ObjectMapper objectMapper) {
         this.appointmentService = appointmentService;
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     // -------------------------------------------------------------------------
@@ -35,31 +49,54 @@ public class AppointmentController {
 
     /**
      * Retrieves a list of appointments for a doctor on a specific date, optionally filtered by patient name.
-     * Endpoint: GET /appointments/{date}/{patientName}/{token}
+     * With stream=true the same JSON is written incrementally from a database cursor instead of
+     * being built in memory first. With view=compact each row carries only IDs, names, time and status.
+     * Endpoint: GET /appointments/{date}/{patientName}?stream=true|false&view=full|compact
      *
      * @param date The date of appointments.
      * @param patientName The name of the patient to filter by (can be "all" or any string).
-     * @param token The doctor's authorization token.
+     * @param stream Whether to stream the response.
+     * @param view "compact" for AppointmentSummaryDTO rows, anything else for full AppointmentDTO rows.
+     * @param principal The authenticated doctor (resolved once from the Authorization header).
      * @return List of AppointmentDTOs or an error response.
      */
-    @GetMapping("/{date}/{patientName}/{token}")
-    public ResponseEntity<Map<String, Object>> getAppointments(
+    @GetMapping("/{date}/{patientName}")
+    public ResponseEntity<?> getAppointments(
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
             @PathVariable String patientName,
-            @PathVariable String token) {
+            @RequestParam(defaultValue = "false") boolean stream,
+            @RequestParam(defaultValue = "full") String view,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Doctor only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "doctor");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "doctor");
         if (validationError != null) {
-            // Returns Unauthorized (401) or other error from validateToken
+            // Returns Unauthorized (401) if the request is not authenticated as a doctor
             return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
         }
 
         // 2. Adjust patientName for null/empty search if passed as "all"
         String pname = patientName.equalsIgnoreCase("all") ? null : patientName;
+        boolean compact = view.equalsIgnoreCase("compact");
+
+        if (stream) {
+            Long doctorId = principal.getUserId();
+            StreamingResponseBody body = out -> {
+                try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                    json.writeStartObject();
+                    json.writeArrayFieldStart("appointments");
+                    appointmentService.writeAppointments(pname, date, doctorId, compact, json);
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body);
+        }
 
         // 3. Fetch Appointments
-        Map<String, Object> result = appointmentService.getAppointment(pname, date, token);
+        Map<String, Object> result = appointmentService.getAppointment(pname, date, principal.getUserId(), compact);
 
         // Check if the service returned a business error (e.g., doctor ID not found in token)
         if (result.containsKey("error")) {
@@ -75,50 +112,92 @@ public class AppointmentController {
 
     /**
      * Books a new appointment after validating the token and the time slot.
-     * Endpoint: POST /appointments/{token}
+     * Endpoint: POST /appointments
      *
      * @param appointment The Appointment object to book.
-     * @param token The patient's authorization token.
+     * @param principal The authenticated patient (resolved once from the Authorization header).
      * @return Success or error message.
      */
-    @PostMapping("/{token}")
+    @PostMapping
     public ResponseEntity<Map<String, String>> bookAppointment(
             @RequestBody Appointment appointment,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Patient only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "patient");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "patient");
         if (validationError != null) {
             return validationError;
         }
 
-        // 2. Validate Appointment Availability
-        int validationResult = service.validateAppointment(appointment);
+        // 2. A new, scheduled appointment of the authenticated patient, whatever the body says
+        // about ID, patient or status
+        appointment.setId(null);
+        appointment.setPatientId(principal.getUserId());
+        appointment.setStatus(0);
+
+        // 3. Validate and book in one pipeline (doctor, patient and slot are checked once)
+        BookingResult bookingResult = appointmentService.bookAppointment(appointment);
+
+        HttpStatus status = switch (bookingResult) {
+            case BOOKED -> HttpStatus.CREATED;
+            case INVALID_REQUEST, DOCTOR_NOT_FOUND, PATIENT_NOT_FOUND -> HttpStatus.BAD_REQUEST;
+            case SLOT_UNAVAILABLE -> HttpStatus.CONFLICT;
+            case ERROR -> HttpStatus.INTERNAL_SERVER_ERROR;
+        };
+        String key = bookingResult == BookingResult.BOOKED ? "message" : "error";
+        return new ResponseEntity<>(Collections.singletonMap(key, bookingResult.getMessage()), status);
+    }
+
+    /**
+     * Books several appointments in one request (e.g. a weekly follow-up series).
+     * The whole batch is checked and inserted together, always for the authenticated patient.
+     * Endpoint: POST /appointments/batch
+     *
+     * @param appointments The Appointment objects to book.
+     * @param principal The authenticated patient (resolved once from the Authorization header).
+     * @return Per-item results in request order, plus the number booked.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> bookAppointments(
+            @RequestBody List<Appointment> appointments,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
+
+        // 1. Validate Token (Patient only)
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "patient");
+        if (validationError != null) {
+            return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
+        }
 
-        if (validationResult == -1) {
+        if (appointments.size() > MAX_BATCH_SIZE) {
             return new ResponseEntity<>(
-                    Collections.singletonMap("error", "Doctor not found."),
+                    Collections.singletonMap("error", "At most " + MAX_BATCH_SIZE + " appointments per batch."),
                     HttpStatus.BAD_REQUEST);
         }
-        if (validationResult == 0) {
-            return new ResponseEntity<>(
-                    Collections.singletonMap("error", "Appointment time is unavailable for the doctor."),
-                    HttpStatus.CONFLICT);
+
+        // 2. Every item is a new, scheduled appointment of the authenticated patient,
+        // whatever the body says about ID, patient or status
+        for (Appointment appointment : appointments) {
+            appointment.setId(null);
+            appointment.setPatientId(principal.getUserId());
+            appointment.setStatus(0);
         }
-        // validationResult == 1 means valid, proceed
 
-        // 3. Book Appointment
-        int bookingResult = appointmentService.bookAppointment(appointment);
+        // 3. Validate and book the whole batch
+        List<BookingResult> results = appointmentService.bookAppointments(appointments);
 
-        if (bookingResult == 1) {
-            return new ResponseEntity<>(
-                    Collections.singletonMap("message", "Appointment booked successfully."),
-                    HttpStatus.CREATED);
-        } else {
-            return new ResponseEntity<>(
-                    Collections.singletonMap("error", "Failed to book appointment due to service error."),
-                    HttpStatus.INTERNAL_SERVER_ERROR);
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("index", i);
+            item.put("result", results.get(i));
+            item.put("message", results.get(i).getMessage());
+            items.add(item);
         }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", items);
+        response.put("booked", results.stream().filter(r -> r == BookingResult.BOOKED).count());
+        return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
     // -------------------------------------------------------------------------
@@ -126,29 +205,26 @@ public class AppointmentController {
     // -------------------------------------------------------------------------
 
     /**
-     * Updates an existing appointment.
-     * Endpoint: PUT /appointments/{token}
+     * Updates an existing appointment of the authenticated patient.
+     * Endpoint: PUT /appointments
      *
      * @param appointment The Appointment object with updated details.
-     * @param token The patient's authorization token.
+     * @param principal The authenticated patient (resolved once from the Authorization header).
      * @return Success or error message.
      */
-    @PutMapping("/{token}")
+    @PutMapping
     public ResponseEntity<Map<String, String>> updateAppointment(
             @RequestBody Appointment appointment,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Patient only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "patient");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "patient");
         if (validationError != null) {
             return validationError;
         }
 
-        // NOTE: Additional business logic for re-validating the time slot must be handled
-        // within appointmentService.updateAppointment() or checked here explicitly.
-        
-        // 2. Update Appointment
-        return appointmentService.updateAppointment(appointment);
+        // 2. Update Appointment (Service re-validates the slot and handles the patient ID authorization check)
+        return appointmentService.updateAppointment(appointment, principal.getUserId());
     }
 
     // -------------------------------------------------------------------------
@@ -157,24 +233,24 @@ public class AppointmentController {
 
     /**
      * Cancels an existing appointment.
-     * Endpoint: DELETE /appointments/{id}/{token}
+     * Endpoint: DELETE /appointments/{id}
      *
      * @param id The ID of the appointment to cancel.
-     * @param token The patient's authorization token.
+     * @param principal The authenticated patient (resolved once from the Authorization header).
      * @return Success or error message.
      */
-    @DeleteMapping("/{id}/{token}")
+    @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, String>> cancelAppointment(
             @PathVariable long id,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Patient only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "patient");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "patient");
         if (validationError != null) {
             return validationError;
         }
 
         // 2. Cancel Appointment (Service handles patient ID authorization check)
-        return appointmentService.cancelAppointment(id, token);
+        return appointmentService.cancelAppointment(id, principal.getUserId());
     }
 }
@@ -22,14 +22,13 @@ public class AppointmentDTO {
     private final LocalDateTime appointmentTime;
     private final int status;
 
-    // --- Calculated/Formatted Fields ---
-    private final LocalDate appointmentDate;
-    private final LocalTime appointmentTimeOnly;
-    private final LocalDateTime endTime;
+    // Appointment length used for the derived endTime
+    private static final long APPOINTMENT_DURATION_HOURS = 1;
 
     /**
-     * Constructor to initialize all core appointment fields and automatically
-     * calculate derivative time fields (appointmentDate, appointmentTimeOnly, endTime).
+     * Constructor to initialize all core appointment fields.
+     * The derivative time fields (appointmentDate, appointmentTimeOnly, endTime) are not stored;
+     * their getters compute them from appointmentTime when the DTO is serialized.
      */
     public AppointmentDTO(
             Long id, 
@@ -53,11 +52,6 @@ public class AppointmentDTO {
         this.patientAddress = patientAddress;
         this.appointmentTime = appointmentTime;
         this.status = status;
-
-        // Auto-calculation of derivative fields
-        this.appointmentDate = appointmentTime.toLocalDate();
-        this.appointmentTimeOnly = appointmentTime.toLocalTime();
-        this.endTime = appointmentTime.plusHours(1); // Calculated as appointmentTime + 1 hour
     }
 
     // --- Getter Methods ---
@@ -102,15 +96,17 @@ public class AppointmentDTO {
         return status;
     }
 
+    // --- Calculated/Formatted Fields (computed on access) ---
+
     public LocalDate getAppointmentDate() {
-        return appointmentDate;
+        return appointmentTime.toLocalDate();
     }
 
     public LocalTime getAppointmentTimeOnly() {
-        return appointmentTimeOnly;
+        return appointmentTime.toLocalTime();
     }
 
     public LocalDateTime getEndTime() {
-        return endTime;
+        return appointmentTime.plusHours(APPOINTMENT_DURATION_HOURS); // Calculated as appointmentTime + 1 hour
     }
 }
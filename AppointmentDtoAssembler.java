@@ -0,0 +1,180 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.dto.AppointmentDTO;
+import com.example.yourprojectname.dto.AppointmentSummaryDTO;
+import com.example.yourprojectname.model.Appointment;
+import com.example.yourprojectname.model.Doctor;
+import com.example.yourprojectname.model.Patient;
+import com.example.yourprojectname.repository.DoctorRepository;
+import com.example.yourprojectname.repository.PatientRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Builds AppointmentDTOs for a batch of Appointment entities.
+ * Collects the distinct patient and doctor IDs, loads each set with a single
+ * findAllById call and assembles the DTOs from in-memory maps, so the number
+ * of queries per call is constant regardless of the number of appointments.
+ * toSummaries builds the compact AppointmentSummaryDTO from name-only projections instead.
+ * For very large results, writeJson does the same per fixed-size chunk of a stream.
+ */
+@Component
+public class AppointmentDtoAssembler {
+
+    // Names shown when a patient or doctor (or the patient's name) is missing, in both the full and compact view
+    private static final String UNKNOWN_PATIENT = "Unknown Patient";
+    private static final String UNKNOWN_DOCTOR = "Unknown Doctor";
+
+    // Appointments converted and written per chunk when streaming (two name lookups per chunk)
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    private final PatientRepository patientRepository;
+    private final DoctorRepository doctorRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public AppointmentDtoAssembler(PatientRepository patientRepository, DoctorRepository doctorRepository) {
+        this.patientRepository = patientRepository;
+        this.doctorRepository = doctorRepository;
+    }
+
+    /**
+     * Converts a list of Appointment entities to AppointmentDTOs, preserving order.
+     *
+     * @param appointments The appointments to convert.
+     * @return The corresponding list of AppointmentDTOs.
+     */
+    public List<AppointmentDTO> toDtos(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 1. Collect distinct IDs referenced by the appointments
+        Set<Long> patientIds = appointments.stream().map(Appointment::getPatientId).collect(Collectors.toSet());
+        Set<Long> doctorIds = appointments.stream().map(Appointment::getDoctorId).collect(Collectors.toSet());
+
+        // 2. Fetch each side in one batch
+        Map<Long, Patient> patients = patientRepository.findAllById(patientIds).stream()
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        Map<Long, Doctor> doctors = doctorRepository.findAllById(doctorIds).stream()
+                .collect(Collectors.toMap(Doctor::getId, Function.identity()));
+
+        // 3. Build the DTOs from the in-memory maps
+        return appointments.stream()
+                .map(a -> toDto(a, patients.get(a.getPatientId()), doctors.get(a.getDoctorId())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Converts a list of Appointment entities to compact AppointmentSummaryDTOs, preserving order.
+     * Only patient and doctor names are loaded, with one projection query per side.
+     *
+     * @param appointments The appointments to convert.
+     * @return The corresponding list of AppointmentSummaryDTOs.
+     */
+    public List<AppointmentSummaryDTO> toSummaries(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 1. Collect distinct IDs referenced by the appointments
+        Set<Long> patientIds = appointments.stream().map(Appointment::getPatientId).collect(Collectors.toSet());
+        Set<Long> doctorIds = appointments.stream().map(Appointment::getDoctorId).collect(Collectors.toSet());
+
+        // 2. Fetch only the names of each side in one batch
+        // A patient without a name is left out, so it gets the same fallback as a missing one (as in toDto)
+        Map<Long, String> patientNames = new HashMap<>();
+        for (Object[] row : patientRepository.findNamesByIds(patientIds)) {
+            if (row[1] != null) {
+                patientNames.put((Long) row[0], (String) row[1]);
+            }
+        }
+        Map<Long, String> doctorNames = new HashMap<>();
+        for (Object[] row : doctorRepository.findNamesByIds(doctorIds)) {
+            doctorNames.put((Long) row[0], row[1] + " " + row[2]);
+        }
+
+        // 3. Build the DTOs from the in-memory maps
+        return appointments.stream()
+                .map(a -> new AppointmentSummaryDTO(
+                        a.getId(),
+                        a.getDoctorId(),
+                        doctorNames.getOrDefault(a.getDoctorId(), UNKNOWN_DOCTOR),
+                        a.getPatientId(),
+                        patientNames.getOrDefault(a.getPatientId(), UNKNOWN_PATIENT),
+                        a.getAppointmentTime(),
+                        a.getStatus()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Writes a stream of appointments as AppointmentDTO (or AppointmentSummaryDTO) JSON objects, chunk by chunk.
+     * Each chunk's names are resolved in bulk, then the chunk is written, flushed and detached
+     * from the persistence context, so memory stays flat regardless of the stream's length.
+     * Must be called inside the transaction that opened the stream.
+     *
+     * @param appointments The appointments to write, in order.
+     * @param json The generator to write to; the caller writes the enclosing array.
+     * @param compact Whether to write the compact AppointmentSummaryDTO instead of the full AppointmentDTO.
+     * @return The number of appointments written.
+     */
+    public long writeJson(Stream<Appointment> appointments, JsonGenerator json, boolean compact) throws IOException {
+        long written = 0;
+        List<Appointment> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        Iterator<Appointment> iterator = appointments.iterator();
+        while (iterator.hasNext()) {
+            chunk.add(iterator.next());
+            if (chunk.size() == STREAM_CHUNK_SIZE || !iterator.hasNext()) {
+                for (Object dto : compact ? toSummaries(chunk) : toDtos(chunk)) {
+                    json.writeObject(dto);
+                }
+                json.flush();
+                written += chunk.size();
+                chunk.clear();
+                entityManager.clear();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Converts a single Appointment using already-loaded Patient and Doctor entities (either may be null).
+     */
+    private AppointmentDTO toDto(Appointment appointment, Patient patient, Doctor doctor) {
+        if (patient == null) {
+            patient = new Patient();
+        }
+        String patientFullName = patient.getName() != null ? patient.getName() : UNKNOWN_PATIENT;
+        String doctorFullName = doctor != null ? doctor.getFirstName() + " " + doctor.getLastName() : UNKNOWN_DOCTOR;
+
+        return new AppointmentDTO(
+            appointment.getId(),
+            appointment.getDoctorId(),
+            doctorFullName,
+            appointment.getPatientId(),
+            patientFullName,
+            patient.getEmail(),
+            patient.getPhone(),
+            patient.getAddress(),
+            appointment.getAppointmentTime(),
+            appointment.getStatus()
+        );
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * CSV exports for admins (the export part of the "Monthly Appointment Reporting" user story).
+ * Appointment rows are read from a forward-only database cursor and written straight to the
+ * caller's Writer, so an export of any size runs in constant memory: the cursor only advances
+ * as fast as the client consumes the response.
+ */
+@Service
+public class AppointmentExportService {
+
+    private static final String APPOINTMENT_HEADER =
+            "id,appointment_time,status,doctor_id,doctor_name,specialty,patient_id,patient_name";
+    private static final String REPORT_HEADER = "month,scheduled,completed,cancelled";
+
+    // Leading characters that make Excel, LibreOffice and Sheets evaluate a cell as a formula
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final AppointmentRepository appointmentRepository;
+    private final AppointmentReportService reportService;
+
+    @Autowired
+    public AppointmentExportService(AppointmentRepository appointmentRepository, AppointmentReportService reportService) {
+        this.appointmentRepository = appointmentRepository;
+        this.reportService = reportService;
+    }
+
+    /**
+     * Writes all appointments in a date range as CSV, one row per appointment, ordered by time.
+     * The stream holds a database cursor, so it is consumed and closed inside this read-only transaction.
+     *
+     * @param from The first date (inclusive).
+     * @param to The last date (inclusive).
+     * @param specialty The doctor specialty to export (case-insensitive), or null for all.
+     * @param out The writer to write to; it is flushed but not closed.
+     * @return The number of appointment rows written.
+     */
+    @Transactional(readOnly = true)
+    public long writeAppointmentsCsv(LocalDate from, LocalDate to, String specialty, Writer out) throws IOException {
+        out.write(APPOINTMENT_HEADER);
+        out.write('\n');
+
+        long written = 0;
+        try (Stream<Object[]> rows = appointmentRepository.streamExportRows(
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay(), specialty)) {
+            Iterator<Object[]> iterator = rows.iterator();
+            StringBuilder line = new StringBuilder(128);
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                line.setLength(0);
+                line.append(row[0]).append(',')
+                        .append(row[1]).append(',')
+                        .append(AppointmentReportService.statusName(((Number) row[2]).intValue())).append(',')
+                        .append(row[3]).append(',');
+                appendField(line, row[4] == null ? null : row[4] + " " + row[5]);
+                line.append(',');
+                appendField(line, (String) row[6]);
+                line.append(',').append(row[7]).append(',');
+                appendField(line, (String) row[8]);
+                line.append('\n');
+                out.append(line);
+                written++;
+            }
+        }
+        out.flush();
+        return written;
+    }
+
+    /**
+     * Writes the monthly report (see AppointmentReportService) as CSV, one row per month.
+     *
+     * @param from The first month (inclusive).
+     * @param to The last month (inclusive).
+     * @param specialty The specialty to report on, or null for all.
+     * @param out The writer to write to; it is flushed but not closed.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeMonthlyReportCsv(YearMonth from, YearMonth to, String specialty, Writer out) throws IOException {
+        Map<String, Object> report = reportService.getMonthlyReport(from, to, specialty);
+
+        out.write(REPORT_HEADER);
+        out.write('\n');
+        for (Map<String, Object> row : (List<Map<String, Object>>) report.get("months")) {
+            out.write(row.get("month") + "," + row.get("scheduled") + "," + row.get("completed") + ","
+                    + row.get("cancelled") + "\n");
+        }
+        out.flush();
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Private Helpers ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Appends a text field, quoting it when it contains a separator, quote or line break.
+     * A field starting with a character a spreadsheet would read as a formula gets a leading
+     * apostrophe, so names entered by users cannot run formulas when the export is opened.
+     */
+    private static void appendField(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.model.Appointment;
+import com.example.yourprojectname.model.Doctor;
+import com.example.yourprojectname.repository.AppointmentRepository;
+import com.example.yourprojectname.repository.DoctorRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Monthly appointment report (the "Monthly Appointment Reporting" user story).
+ * Keeps one counter per (month, doctor, specialty, status) in memory, so a report is a scan
+ * over those rollups rather than a GROUP BY over the whole appointments table.
+ * The counters are built with a single aggregate query on first use (or on demand through
+ * rebuild()) and are then kept current by AppointmentService and DoctorService after every write.
+ * A rebuild is the reconciliation point: a write that commits while a rebuild is running may be
+ * counted twice or not at all until the next one.
+ * The counters are per instance and only see writes made through this instance, so once built
+ * they are also rebuilt every report.rebuild-interval-ms; with several instances behind a load
+ * balancer a report can lag writes made elsewhere by up to that interval.
+ */
+@Service
+public class AppointmentReportService {
+
+    // Appointment.status values, indexed by status
+    private static final String[] STATUS_NAMES = {"scheduled", "completed", "cancelled"};
+    private static final int SCHEDULED = 0;
+    private static final int CANCELLED = 2;
+
+    // Specialty used for appointments whose doctor has none. Deleted doctors are only deactivated,
+    // so the rebuild query and specialtyOf both still see (and agree on) their specialty
+    private static final String UNKNOWN_SPECIALTY = "Unknown";
+
+    private final AppointmentRepository appointmentRepository;
+    private final DoctorRepository doctorRepository;
+
+    // How often built counters are recomputed from the database; 0 disables the periodic rebuild
+    @Value("${report.rebuild-interval-ms:3600000}")
+    private long rebuildIntervalMillis;
+
+    private Thread rebuilder;
+    private volatile boolean running;
+
+    // Counter updates take the read lock; moving a doctor's counters to a new specialty takes the
+    // write lock, so no update can land under the old specialty while they are being moved
+    private final ReadWriteLock specialtyLock = new ReentrantReadWriteLock();
+
+    // Null until the first build; replaced wholesale by rebuild()
+    private volatile Map<ReportKey, LongAdder> counters;
+    private volatile Instant rebuiltAt;
+    private volatile long lastRebuildMillis;
+
+    // Doctor ID -> specialty, so incremental updates do not query the doctor
+    private final Map<Long, String> doctorSpecialties = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AppointmentReportService(AppointmentRepository appointmentRepository, DoctorRepository doctorRepository) {
+        this.appointmentRepository = appointmentRepository;
+        this.doctorRepository = doctorRepository;
+    }
+
+    private record ReportKey(YearMonth month, Long doctorId, String specialty, int status) {
+    }
+
+    @PostConstruct
+    void start() {
+        if (rebuildIntervalMillis <= 0) {
+            return;
+        }
+        running = true;
+        rebuilder = new Thread(this::runRebuilder, "appointment-report-rebuild");
+        rebuilder.setDaemon(true);
+        rebuilder.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (rebuilder != null) {
+            rebuilder.interrupt();
+        }
+    }
+
+    /**
+     * Returns the report name of an Appointment.status value (e.g. "cancelled").
+     */
+    public static String statusName(int status) {
+        return status >= 0 && status < STATUS_NAMES.length ? STATUS_NAMES[status] : String.valueOf(status);
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Report ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns the number of appointments per month and status, optionally for one specialty only.
+     * Every month in the range is listed, including months without appointments.
+     *
+     * @param from The first month (inclusive).
+     * @param to The last month (inclusive).
+     * @param specialty The specialty to include (case-insensitive), or null for all specialties.
+     * @return A map with the range, the specialty filter and one row per month.
+     */
+    public Map<String, Object> getMonthlyReport(YearMonth from, YearMonth to, String specialty) {
+        Map<ReportKey, LongAdder> current = ensureBuilt();
+
+        // 1. One zeroed row per month, in calendar order
+        TreeMap<YearMonth, long[]> months = new TreeMap<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            months.put(month, new long[STATUS_NAMES.length]);
+        }
+
+        // 2. Add up every matching counter
+        for (Map.Entry<ReportKey, LongAdder> entry : current.entrySet()) {
+            ReportKey key = entry.getKey();
+            long[] row = months.get(key.month());
+            if (row == null || key.status() < 0 || key.status() >= STATUS_NAMES.length) {
+                continue;
+            }
+            if (specialty != null && !specialty.equalsIgnoreCase(key.specialty())) {
+                continue;
+            }
+            row[key.status()] += entry.getValue().sum();
+        }
+
+        // 3. Shape the response
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map.Entry<YearMonth, long[]> entry : months.entrySet()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("month", entry.getKey().toString());
+            for (int status = 0; status < STATUS_NAMES.length; status++) {
+                row.put(STATUS_NAMES[status], entry.getValue()[status]);
+            }
+            rows.add(row);
+        }
+
+        Map<String, Object> report = new HashMap<>();
+        report.put("from", from.toString());
+        report.put("to", to.toString());
+        report.put("specialty", specialty);
+        report.put("months", rows);
+        report.put("rebuiltAt", rebuiltAt);
+        return report;
+    }
+
+    /**
+     * Discards the counters and recomputes them from the database with one aggregate query.
+     *
+     * @return Statistics about the rebuild.
+     */
+    public synchronized Map<String, Object> rebuild() {
+        long start = System.currentTimeMillis();
+        Map<ReportKey, LongAdder> fresh = new ConcurrentHashMap<>();
+        Map<Long, String> freshSpecialties = new HashMap<>();
+        addRows(fresh, freshSpecialties, appointmentRepository.countByMonthDoctorSpecialtyAndStatus());
+
+        // Swap counters and specialties together, so a specialty change is never half applied
+        specialtyLock.writeLock().lock();
+        try {
+            counters = fresh;
+            doctorSpecialties.clear();
+            doctorSpecialties.putAll(freshSpecialties);
+        } finally {
+            specialtyLock.writeLock().unlock();
+        }
+        rebuiltAt = Instant.now();
+        lastRebuildMillis = System.currentTimeMillis() - start;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("counters", fresh.size());
+        stats.put("rebuildMillis", lastRebuildMillis);
+        stats.put("rebuiltAt", rebuiltAt);
+        return stats;
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Incremental Updates (called after the database write succeeded) ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Counts newly booked appointments.
+     */
+    public void recordBooked(List<Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            add(appointment.getDoctorId(), appointment.getAppointmentTime(), appointment.getStatus(), 1);
+        }
+    }
+
+    /**
+     * Moves one appointment from its previous doctor, time and status to its current ones.
+     */
+    public void recordUpdated(Long previousDoctorId, LocalDateTime previousTime, int previousStatus, Appointment updated) {
+        add(previousDoctorId, previousTime, previousStatus, -1);
+        add(updated.getDoctorId(), updated.getAppointmentTime(), updated.getStatus(), 1);
+    }
+
+    /**
+     * Moves one scheduled appointment to cancelled.
+     */
+    public void recordCancelled(Long doctorId, LocalDateTime appointmentTime) {
+        add(doctorId, appointmentTime, SCHEDULED, -1);
+        add(doctorId, appointmentTime, CANCELLED, 1);
+    }
+
+    /**
+     * Moves every scheduled appointment of a doctor to cancelled, mirroring
+     * AppointmentRepository.cancelScheduledByDoctorId without another query.
+     */
+    public void recordDoctorCancelled(Long doctorId) {
+        specialtyLock.readLock().lock();
+        try {
+            Map<ReportKey, LongAdder> current = counters;
+            if (current == null) {
+                return;
+            }
+            for (Map.Entry<ReportKey, LongAdder> entry : current.entrySet()) {
+                ReportKey key = entry.getKey();
+                if (key.doctorId().equals(doctorId) && key.status() == SCHEDULED) {
+                    long count = entry.getValue().sumThenReset();
+                    current.computeIfAbsent(new ReportKey(key.month(), doctorId, key.specialty(), CANCELLED),
+                            k -> new LongAdder()).add(count);
+                }
+            }
+        } finally {
+            specialtyLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Moves a doctor's counters to the doctor's current specialty, in memory and without a query.
+     * Does nothing if the specialty is the one the counters are already filed under.
+     *
+     * @param doctorId The ID of the doctor.
+     * @param specialty The doctor's specialty after the update.
+     */
+    public void doctorSpecialtyChanged(Long doctorId, String specialty) {
+        String newSpecialty = specialty != null ? specialty : UNKNOWN_SPECIALTY;
+        specialtyLock.writeLock().lock();
+        try {
+            String previous = doctorSpecialties.put(doctorId, newSpecialty);
+            Map<ReportKey, LongAdder> current = counters;
+            if (newSpecialty.equals(previous) || current == null) {
+                return;
+            }
+            List<ReportKey> moved = new ArrayList<>();
+            for (ReportKey key : current.keySet()) {
+                if (key.doctorId().equals(doctorId) && !key.specialty().equals(newSpecialty)) {
+                    moved.add(key);
+                }
+            }
+            for (ReportKey key : moved) {
+                long count = current.remove(key).sum();
+                current.computeIfAbsent(new ReportKey(key.month(), doctorId, newSpecialty, key.status()),
+                        k -> new LongAdder()).add(count);
+            }
+        } finally {
+            specialtyLock.writeLock().unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Private Helpers ---
+    // -------------------------------------------------------------------------
+
+    private Map<ReportKey, LongAdder> ensureBuilt() {
+        Map<ReportKey, LongAdder> current = counters;
+        if (current == null) {
+            synchronized (this) {
+                if (counters == null) {
+                    rebuild();
+                }
+                current = counters;
+            }
+        }
+        return current;
+    }
+
+    private void runRebuilder() {
+        while (running) {
+            try {
+                Thread.sleep(rebuildIntervalMillis);
+                // Counters nobody has asked for yet are left to the first report
+                if (counters != null) {
+                    rebuild();
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts to end the wait; the loop condition decides whether to exit
+            } catch (Exception e) {
+                System.err.println("Error rebuilding appointment report: " + e.getMessage());
+            }
+        }
+    }
+
+    private void add(Long doctorId, LocalDateTime appointmentTime, int status, long delta) {
+        // The specialty is looked up under the lock too, so it cannot be one that is being moved away from
+        specialtyLock.readLock().lock();
+        try {
+            Map<ReportKey, LongAdder> current = counters;
+            if (current == null) {
+                // Not built yet; the first build will read this write from the database
+                return;
+            }
+            ReportKey key = new ReportKey(YearMonth.from(appointmentTime), doctorId, specialtyOf(doctorId), status);
+            current.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+        } finally {
+            specialtyLock.readLock().unlock();
+        }
+    }
+
+    private void addRows(Map<ReportKey, LongAdder> target, Map<Long, String> specialties, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            YearMonth month = YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue());
+            Long doctorId = (Long) row[2];
+            String specialty = row[3] != null ? (String) row[3] : UNKNOWN_SPECIALTY;
+            int status = ((Number) row[4]).intValue();
+            long count = ((Number) row[5]).longValue();
+
+            specialties.putIfAbsent(doctorId, specialty);
+            target.computeIfAbsent(new ReportKey(month, doctorId, specialty, status), k -> new LongAdder()).add(count);
+        }
+    }
+
+    /**
+     * Returns a doctor's specialty as the rebuild query sees it; findById includes deactivated doctors.
+     */
+    private String specialtyOf(Long doctorId) {
+        return doctorSpecialties.computeIfAbsent(doctorId, id -> doctorRepository.findById(id)
+                .map(Doctor::getSpecialty)
+                .orElse(UNKNOWN_SPECIALTY));
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.yourprojectname.repository; // Replace with your actual repository package name
 
 import com.example.yourprojectname.model.Appointment; // Assuming your Appointment entity is in this package
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for managing Appointment entities.
@@ -24,6 +29,7 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
      * Retrieve appointments for a specific doctor within a given time range.
      * Uses LEFT JOIN FETCH to eagerly load related Doctor and Availability data 
      * in a single query, optimizing performance and avoiding the N+1 problem.
+     * Cancelled appointments (status 2) are left out.
      * * @param doctorId The ID of the doctor.
      * @param start The start date and time of the range (inclusive).
      * @param end The end date and time of the range (exclusive).
@@ -31,48 +37,217 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
      */
     @Query("SELECT a FROM Appointment a " +
            "LEFT JOIN FETCH a.doctor d " +
-           "WHERE a.doctorId = :doctorId AND a.appointmentTime BETWEEN :start AND :end")
+           "WHERE a.doctorId = :doctorId AND a.appointmentTime BETWEEN :start AND :end AND a.status <> 2")
     List<Appointment> findByDoctorIdAndAppointmentTimeBetween(
             @Param("doctorId") Long doctorId,
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end);
 
+    /**
+     * Retrieve only the appointment times booked for a doctor within a given time range.
+     * Projection query used to build the in-memory availability bitmap without loading entities.
+     * Cancelled appointments (status 2) do not occupy a slot and are ignored.
+     *
+     * @param doctorId The ID of the doctor.
+     * @param start The start date and time of the range (inclusive).
+     * @param end The end date and time of the range (inclusive).
+     * @return A list of booked appointment times.
+     */
+    @Query("SELECT a.appointmentTime FROM Appointment a " +
+           "WHERE a.doctorId = :doctorId AND a.appointmentTime BETWEEN :start AND :end " +
+           "AND a.status <> 2")
+    List<LocalDateTime> findAppointmentTimesByDoctorIdAndAppointmentTimeBetween(
+            @Param("doctorId") Long doctorId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Retrieve (doctorId, appointmentTime) pairs for several doctors within a given time range.
+     * Projection query used to compute multi-day, multi-doctor availability in one round-trip.
+     * Cancelled appointments (status 2) are ignored.
+     *
+     * @param doctorIds The IDs of the doctors.
+     * @param start The start date and time of the range (inclusive).
+     * @param end The end date and time of the range (inclusive).
+     * @return A list of [doctorId, appointmentTime] rows.
+     */
+    @Query("SELECT a.doctorId, a.appointmentTime FROM Appointment a " +
+           "WHERE a.doctorId IN :doctorIds AND a.appointmentTime BETWEEN :start AND :end " +
+           "AND a.status <> 2")
+    List<Object[]> findDoctorIdsAndAppointmentTimesBetween(
+            @Param("doctorIds") Collection<Long> doctorIds,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Find which of the given doctors have all their working slots within a time range taken.
+     * Aggregates bookings per doctor in the database so callers never load appointment rows,
+     * and only for the candidate doctors, so the scan stays on their (doctor_id, ...) index entries.
+     * Cancelled appointments (status 2) are ignored.
+     *
+     * @param doctorIds The candidate doctor IDs.
+     * @param start The start date and time of the range (inclusive).
+     * @param end The end date and time of the range (inclusive).
+     * @param slotCount The number of working slots in the range.
+     * @return The IDs of the candidates with at least slotCount distinct bookings in the range.
+     */
+    @Query("SELECT a.doctorId FROM Appointment a " +
+           "WHERE a.doctorId IN :doctorIds AND a.appointmentTime BETWEEN :start AND :end AND a.status <> 2 " +
+           "GROUP BY a.doctorId " +
+           "HAVING COUNT(DISTINCT a.appointmentTime) >= :slotCount")
+    List<Long> findFullyBookedDoctorIds(
+            @Param("doctorIds") Collection<Long> doctorIds,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("slotCount") long slotCount);
+
+    /**
+     * Checks in one round-trip that both participants of a booking exist (and the doctor is active).
+     *
+     * @param doctorId The ID of the doctor.
+     * @param patientId The ID of the patient.
+     * @return An empty list if the doctor does not exist or was deleted; otherwise one element telling whether the patient exists.
+     */
+    @Query("SELECT CASE WHEN EXISTS (SELECT p.id FROM Patient p WHERE p.id = :patientId) THEN true ELSE false END " +
+           "FROM Doctor d WHERE d.id = :doctorId AND d.active = true")
+    List<Boolean> checkBookingParticipants(
+            @Param("doctorId") Long doctorId,
+            @Param("patientId") Long patientId);
+
     /**
      * Filter appointments by doctor ID, partial patient name (case-insensitive), and time range.
-     * Uses Spring Data method naming convention for filtering on the Patient's name attribute.
+     * Cancelled appointments (status 2) are left out.
      * * @param doctorId The ID of the doctor.
      * @param patientName The partial name of the patient to search for.
      * @param start The start date and time of the range.
      * @param end The end date and time of the range.
      * @return A list of appointments.
      */
+    @Query("SELECT a FROM Appointment a " +
+           "WHERE a.doctorId = :doctorId AND a.appointmentTime BETWEEN :start AND :end AND a.status <> 2 " +
+           "AND LOWER(a.patient.name) LIKE LOWER(CONCAT('%', :patientName, '%'))")
     List<Appointment> findByDoctorIdAndPatient_NameContainingIgnoreCaseAndAppointmentTimeBetween(
-            Long doctorId,
-            String patientName,
-            LocalDateTime start,
-            LocalDateTime end);
+            @Param("doctorId") Long doctorId,
+            @Param("patientName") String patientName,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
 
-    // --- Deletion Operations ---
+    // --- Streaming Queries (forward-only cursors; must be consumed inside a transaction and closed) ---
 
     /**
-     * Delete all appointments related to a specific doctor ID.
-     * Requires @Modifying and @Transactional annotations.
+     * Stream all appointments of a patient, ordered by time, fetching rows from the database in batches.
+     * Cancelled appointments (status 2) are left out.
      *
-     * @param doctorId The ID of the doctor whose appointments are to be deleted.
+     * @param patientId The ID of the patient.
+     * @return A stream of appointments.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT a FROM Appointment a WHERE a.patientId = :patientId AND a.status <> 2 ORDER BY a.appointmentTime")
+    Stream<Appointment> streamByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * Stream a doctor's appointments within a time range, optionally filtered by partial patient name,
+     * ordered by time and fetched from the database in batches. Cancelled appointments (status 2) are left out.
+     *
+     * @param doctorId The ID of the doctor.
+     * @param patientName The partial patient name (case-insensitive), or null for all patients.
+     * @param start The start date and time of the range (inclusive).
+     * @param end The end date and time of the range (inclusive).
+     * @return A stream of appointments.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT a FROM Appointment a " +
+           "WHERE a.doctorId = :doctorId AND a.appointmentTime BETWEEN :start AND :end AND a.status <> 2 " +
+           "AND (:patientName IS NULL OR LOWER(a.patient.name) LIKE LOWER(CONCAT('%', :patientName, '%'))) " +
+           "ORDER BY a.appointmentTime")
+    Stream<Appointment> streamByDoctorIdAndAppointmentTimeBetween(
+            @Param("doctorId") Long doctorId,
+            @Param("patientName") String patientName,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end);
+
+    /**
+     * Stream flat export rows (no entities, so nothing accumulates in the persistence context)
+     * for appointments in a time range, optionally for one specialty, fetched in batches.
+     * On MySQL the driver only honours the fetch size with useCursorFetch=true on the JDBC URL.
+     *
+     * @param start The start date and time of the range (inclusive).
+     * @param end The end date and time of the range (exclusive).
+     * @param specialty The doctor specialty (case-insensitive), or null for all specialties.
+     * @return A stream of [id, appointmentTime, status, doctorId, doctorFirstName, doctorLastName,
+     *         specialty, patientId, patientName] rows, ordered by time.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT a.id, a.appointmentTime, a.status, a.doctorId, d.firstName, d.lastName, d.specialty, " +
+           "a.patientId, p.name " +
+           "FROM Appointment a LEFT JOIN a.doctor d LEFT JOIN a.patient p " +
+           "WHERE a.appointmentTime >= :start AND a.appointmentTime < :end " +
+           "AND (:specialty IS NULL OR LOWER(d.specialty) = LOWER(:specialty)) " +
+           "ORDER BY a.appointmentTime, a.id")
+    Stream<Object[]> streamExportRows(
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("specialty") String specialty);
+
+    // --- Reporting Aggregates ---
+
+    /**
+     * Count appointments per month, doctor, specialty and status over the whole history.
+     * Used only to (re)build the in-memory report rollups. Deleted doctors are soft-deleted, so they keep their specialty.
+     *
+     * @return A list of [year, month, doctorId, specialty, status, count] rows.
+     */
+    @Query("SELECT YEAR(a.appointmentTime), MONTH(a.appointmentTime), a.doctorId, d.specialty, a.status, COUNT(a) " +
+           "FROM Appointment a LEFT JOIN a.doctor d " +
+           "GROUP BY YEAR(a.appointmentTime), MONTH(a.appointmentTime), a.doctorId, d.specialty, a.status")
+    List<Object[]> countByMonthDoctorSpecialtyAndStatus();
+
+    // --- Status Transitions ---
+
+    /**
+     * Cancel a single appointment with one UPDATE by primary key.
+     * Appointments are never deleted, so the history stays available for reporting.
+     *
+     * @param id The ID of the appointment to cancel.
+     * @return The number of rows updated (0 if the appointment was not scheduled).
      */
     @Modifying
     @Transactional
-    void deleteAllByDoctorId(Long doctorId);
+    @Query("UPDATE Appointment a SET a.status = 2 WHERE a.id = :id AND a.status = 0")
+    int cancelById(@Param("id") Long id);
+
+    /**
+     * Cancel all scheduled appointments of a doctor in one set-based UPDATE.
+     * Completed appointments are left untouched.
+     *
+     * @param doctorId The ID of the doctor whose scheduled appointments are cancelled.
+     * @return The number of appointments cancelled.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Appointment a SET a.status = 2 WHERE a.doctorId = :doctorId AND a.status = 0")
+    int cancelScheduledByDoctorId(@Param("doctorId") Long doctorId);
 
     // --- Patient-Specific Queries ---
 
     /**
-     * Find all appointments for a specific patient using method name convention.
+     * Find all live appointments for a specific patient. Cancelled appointments (status 2) are left out;
+     * use findByPatient_IdAndStatusOrderByAppointmentTimeAsc to list them.
      *
      * @param patientId The ID of the patient.
      * @return A list of appointments.
      */
-    List<Appointment> findByPatientId(Long patientId);
+    @Query("SELECT a FROM Appointment a WHERE a.patientId = :patientId AND a.status <> 2")
+    List<Appointment> findByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * Returns only the IDs of a patient's appointments (e.g. to look up their prescriptions in bulk).
+     *
+     * @param patientId The ID of the patient.
+     * @return The IDs of all of the patient's appointments.
+     */
+    @Query("SELECT a.id FROM Appointment a WHERE a.patientId = :patientId")
+    List<Long> findIdsByPatientId(@Param("patientId") Long patientId);
 
     /**
      * Retrieve appointments for a patient by status, ordered ascending by appointment time.
@@ -90,6 +265,7 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
      * Search appointments by partial doctor name (case-insensitive) and patient ID.
      * Uses @Query with LOWER and CONCAT for robust partial name matching.
      * Assuming doctor's name is stored in 'd.firstName' and 'd.lastName' (modify if different).
+     * Cancelled appointments (status 2) are left out.
      *
      * @param doctorName The partial name of the doctor.
      * @param patientId The ID of the patient.
@@ -97,7 +273,7 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
      */
     @Query("SELECT a FROM Appointment a " +
            "JOIN a.doctor d " +
-           "WHERE a.patientId = :patientId " +
+           "WHERE a.patientId = :patientId AND a.status <> 2 " +
            "AND LOWER(CONCAT(d.firstName, ' ', d.lastName)) LIKE LOWER(CONCAT('%', :doctorName, '%'))")
     List<Appointment> filterByDoctorNameAndPatientId(
             @Param("doctorName") String doctorName,
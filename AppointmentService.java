@@ -1,24 +1,34 @@
 package com.example.yourprojectname.service;
 
-import com.example.yourprojectname.dto.AppointmentDTO;
 import com.example.yourprojectname.model.Appointment;
-import com.example.yourprojectname.model.Patient;
 import com.example.yourprojectname.repository.AppointmentRepository;
 import com.example.yourprojectname.repository.DoctorRepository;
 import com.example.yourprojectname.repository.PatientRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AppointmentService {
@@ -27,18 +37,39 @@ public class AppointmentService {
     private final AppointmentRepository appointmentRepository;
     private final PatientRepository patientRepository;
     private final DoctorRepository doctorRepository;
-    private final TokenService tokenService; // For token validation/extraction
+    private final AppointmentDtoAssembler appointmentDtoAssembler;
+    private final DoctorAvailabilityIndex availabilityIndex;
+    private final AppointmentReportService reportService;
+
+    // Striped per-doctor locks: bookings for the same doctor are serialized within this instance,
+    // bookings for different doctors (almost always) proceed in parallel. Across instances the
+    // unique uk_doctor_slot key (schema.sql) in the database rejects the second writer.
+    private static final int BOOKING_LOCK_STRIPES = 64;
+    // Name of the unique (doctor_id, active_slot) key; only its violations mean "slot taken"
+    private static final String SLOT_CONSTRAINT = "uk_doctor_slot";
+    private final ReentrantLock[] bookingLocks = new ReentrantLock[BOOKING_LOCK_STRIPES];
 
     @Autowired
     public AppointmentService(
             AppointmentRepository appointmentRepository,
             PatientRepository patientRepository,
             DoctorRepository doctorRepository,
-            TokenService tokenService) {
+            AppointmentDtoAssembler appointmentDtoAssembler,
+            DoctorAvailabilityIndex availabilityIndex,
+            AppointmentReportService reportService) {
         this.appointmentRepository = appointmentRepository;
         this.patientRepository = patientRepository;
         this.doctorRepository = doctorRepository;
-        this.tokenService = tokenService;
+        this.appointmentDtoAssembler = appointmentDtoAssembler;
+        this.availabilityIndex = availabilityIndex;
+        this.reportService = reportService;
+        for (int i = 0; i < BOOKING_LOCK_STRIPES; i++) {
+            bookingLocks[i] = new ReentrantLock();
+        }
+    }
+
+    private ReentrantLock bookingLockFor(Long doctorId) {
+        return bookingLocks[Math.floorMod(doctorId.hashCode(), BOOKING_LOCK_STRIPES)];
     }
 
     // -------------------------------------------------------------------------------------------------
@@ -46,35 +77,29 @@ public class AppointmentService {
     // -------------------------------------------------------------------------------------------------
     
     /**
-     * Dummy method representing complex validation logic (e.g., checking doctor availability).
-     * In a real app, this would check time slots, doctor ID existence, etc.
-     * Returns an empty map on success, or an error map on failure.
+     * Validates doctor and patient IDs with a single query and, when checkSlot is set,
+     * that the time slot is free using the in-memory slot bitmap (re-read from the database
+     * before a slot is rejected as taken, so a cancellation on another instance is seen).
+     * Returns null when the appointment may be saved, otherwise the reason it may not.
      */
-    private Map<String, String> validateAppointment(Appointment appointment) {
-        // Simple check: Doctor must exist
-        if (!doctorRepository.existsById(appointment.getDoctorId())) {
-            return Collections.singletonMap("error", "Invalid Doctor ID.");
+    private BookingResult validateAppointment(Appointment appointment, boolean checkSlot) {
+        // Doctor and patient existence in one round-trip
+        List<Boolean> participants = appointmentRepository.checkBookingParticipants(
+                appointment.getDoctorId(), appointment.getPatientId());
+
+        if (participants.isEmpty()) {
+            return BookingResult.DOCTOR_NOT_FOUND;
         }
-        
-        // Simple check: Patient must exist
-        if (!patientRepository.existsById(appointment.getPatientId())) {
-            return Collections.singletonMap("error", "Invalid Patient ID.");
+        if (!participants.get(0)) {
+            return BookingResult.PATIENT_NOT_FOUND;
         }
 
-        // Check for existing appointments for the same doctor at the same time slot (1-hour window assumed)
-        LocalDateTime start = appointment.getAppointmentTime();
-        LocalDateTime end = start.plusMinutes(59).plusSeconds(59); 
-        
-        List<Appointment> existingAppointments = appointmentRepository.findByDoctorIdAndAppointmentTimeBetween(
-            appointment.getDoctorId(), start.minusSeconds(1), end.plusSeconds(1) // Check for overlaps
-        );
-
-        // Filter out the current appointment itself during an update
-        if (existingAppointments.stream().anyMatch(a -> !a.getId().equals(appointment.getId()))) {
-             return Collections.singletonMap("error", "Time slot already booked for this doctor.");
+        // Check the doctor's slot bitmap for the requested 1-hour slot
+        if (checkSlot && !availabilityIndex.isSlotFree(appointment.getDoctorId(), appointment.getAppointmentTime())) {
+            return BookingResult.SLOT_UNAVAILABLE;
         }
 
-        return Collections.emptyMap(); // Valid
+        return null; // Valid
     }
 
 
@@ -84,36 +109,184 @@ public class AppointmentService {
 
     /**
      * Books a new appointment after basic validation.
+     * The slot check and the insert run under the doctor's booking lock, and the unique
+     * (doctor_id, appointment_time) key decides between concurrent writers on other instances,
+     * so exactly one of several requests for the same slot succeeds.
+     * This is the only validation on the booking path: doctor, patient and slot are checked here once.
      * * @param appointment The Appointment object to book.
-     * @return 1 if successful, 0 if there's an error.
+     * @return BOOKED on success, otherwise the reason the booking was rejected.
+     */
+    public BookingResult bookAppointment(Appointment appointment) {
+        if (!isComplete(appointment)) {
+            return BookingResult.INVALID_REQUEST;
+        }
+        ReentrantLock lock = bookingLockFor(appointment.getDoctorId());
+        lock.lock();
+        try {
+            // Perform validation before saving
+            BookingResult rejection = validateAppointment(appointment, true);
+
+            if (rejection != null) {
+                return rejection;
+            }
+
+            appointmentRepository.saveAndFlush(appointment);
+            availabilityIndex.markBooked(appointment.getDoctorId(), appointment.getAppointmentTime());
+            reportService.recordBooked(Collections.singletonList(appointment));
+            return BookingResult.BOOKED;
+        } catch (DataIntegrityViolationException e) {
+            if (isSlotConflict(e)) {
+                // Another instance booked the slot first
+                availabilityIndex.markBooked(appointment.getDoctorId(), appointment.getAppointmentTime());
+                return BookingResult.SLOT_UNAVAILABLE;
+            }
+            // Any other constraint (FK, NOT NULL, ...) is a real error and says nothing about the slot
+            System.err.println("Error booking appointment: " + e.getMessage());
+            return BookingResult.ERROR;
+        } catch (Exception e) {
+            // Log exception and return failure
+            System.err.println("Error booking appointment: " + e.getMessage());
+            return BookingResult.ERROR;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Books several appointments at once (e.g. a recurring follow-up series).
+     * Doctors and patients are validated with one query each, slot conflicts with one bulk
+     * availability query, and all accepted appointments are inserted together in one transaction.
+     * Each item is judged on its own: a conflict, or a missing doctor or time, rejects only that item.
+     *
+     * @param appointments The appointments to book.
+     * @return One BookingResult per input appointment, in the same order.
      */
-    public int bookAppointment(Appointment appointment) {
-        // Perform initial validation before saving
-        Map<String, String> validationResult = validateAppointment(appointment);
+    public List<BookingResult> bookAppointments(List<Appointment> appointments) {
+        if (appointments.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // 1. Validate participants in bulk (items without a doctor or time are rejected on their own below)
+        List<Appointment> complete = appointments.stream().filter(AppointmentService::isComplete).toList();
+        if (complete.isEmpty()) {
+            return Collections.nCopies(appointments.size(), BookingResult.INVALID_REQUEST);
+        }
+        Set<Long> doctorIds = complete.stream().map(Appointment::getDoctorId).collect(Collectors.toSet());
+        Set<Long> patientIds = complete.stream().map(Appointment::getPatientId).collect(Collectors.toSet());
+        Set<Long> existingDoctors = new HashSet<>(doctorRepository.findExistingIds(doctorIds));
+        Set<Long> existingPatients = new HashSet<>(patientRepository.findExistingIds(patientIds));
+
+        // 2. Lock every involved doctor stripe, always in ascending order to avoid deadlocks
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Long doctorId : doctorIds) {
+            stripes.add(Math.floorMod(doctorId.hashCode(), BOOKING_LOCK_STRIPES));
+        }
+        for (Integer stripe : stripes) {
+            bookingLocks[stripe].lock();
+        }
+
+        try {
+            // 3. Load every booked (doctor, time) pair in the batch's time range with one query
+            LocalDateTime earliest = complete.stream().map(Appointment::getAppointmentTime).min(LocalDateTime::compareTo).get();
+            LocalDateTime latest = complete.stream().map(Appointment::getAppointmentTime).max(LocalDateTime::compareTo).get();
+            Set<String> takenSlots = new HashSet<>();
+            for (Object[] row : appointmentRepository.findDoctorIdsAndAppointmentTimesBetween(doctorIds, earliest, latest)) {
+                takenSlots.add(slotKey((Long) row[0], (LocalDateTime) row[1]));
+            }
+
+            // 4. Judge each item; accepted items also claim their slot against later items in the batch
+            List<BookingResult> results = new ArrayList<>();
+            List<Appointment> accepted = new ArrayList<>();
+            for (Appointment appointment : appointments) {
+                BookingResult result;
+                if (!isComplete(appointment)) {
+                    result = BookingResult.INVALID_REQUEST;
+                } else if (!existingDoctors.contains(appointment.getDoctorId())) {
+                    result = BookingResult.DOCTOR_NOT_FOUND;
+                } else if (!existingPatients.contains(appointment.getPatientId())) {
+                    result = BookingResult.PATIENT_NOT_FOUND;
+                } else if (DoctorAvailabilityIndex.slotBit(appointment.getAppointmentTime().toLocalTime()) == 0
+                        || !takenSlots.add(slotKey(appointment.getDoctorId(), appointment.getAppointmentTime()))) {
+                    result = BookingResult.SLOT_UNAVAILABLE;
+                } else {
+                    result = BookingResult.BOOKED;
+                    accepted.add(appointment);
+                }
+                results.add(result);
+            }
 
-        if (validationResult.isEmpty()) {
+            // 5. Insert all accepted appointments in one transaction. This is one round-trip per row:
+            // appointment IDs are AUTO_INCREMENT (IDENTITY), and Hibernate does not batch IDENTITY inserts
             try {
-                appointmentRepository.save(appointment);
-                return 1; // Success
+                appointmentRepository.saveAll(accepted);
+                for (Appointment appointment : accepted) {
+                    availabilityIndex.markBooked(appointment.getDoctorId(), appointment.getAppointmentTime());
+                }
+                reportService.recordBooked(accepted);
             } catch (Exception e) {
-                // Log exception and return failure
-                System.err.println("Error booking appointment: " + e.getMessage());
-                return 0; // Error
+                // The whole insert rolled back (e.g. another instance took one slot); retry the accepted items one by one
+                System.err.println("Batch booking failed, retrying individually: " + e.getMessage());
+                for (int i = 0; i < appointments.size(); i++) {
+                    if (results.get(i) == BookingResult.BOOKED) {
+                        Appointment appointment = appointments.get(i);
+                        appointment.setId(null);
+                        results.set(i, bookAppointment(appointment));
+                    }
+                }
+            }
+            return results;
+        } finally {
+            for (Integer stripe : stripes.descendingSet()) {
+                bookingLocks[stripe].unlock();
             }
         }
-        // Validation failed
-        return 0;
+    }
+
+    /**
+     * Returns whether the appointment names a doctor and a time, without which it cannot be checked at all.
+     */
+    private static boolean isComplete(Appointment appointment) {
+        return appointment.getDoctorId() != null && appointment.getAppointmentTime() != null;
+    }
+
+    private static String slotKey(Long doctorId, LocalDateTime time) {
+        return doctorId + "@" + time;
+    }
+
+    /**
+     * Returns whether an appointment with this status holds its slot (everything but cancelled).
+     */
+    private static boolean occupiesSlot(int status) {
+        return status != 2;
+    }
+
+    /**
+     * Returns whether the violation is the unique slot key, as opposed to any other constraint.
+     * Drivers may qualify the name with the table (e.g. "appointments.uk_doctor_slot").
+     */
+    private static boolean isSlotConflict(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                String constraint = violation.getConstraintName();
+                return constraint != null && constraint.toLowerCase(Locale.ROOT).endsWith(SLOT_CONSTRAINT);
+            }
+        }
+        return false;
     }
 
     /**
      * Updates an existing appointment, ensuring data integrity and availability.
+     * Only the patient who booked the appointment may update it.
      * * @param appointment The appointment object with updated fields.
+     * @param authenticatedPatientId The ID of the authenticated patient.
      * @return A response message indicating success or failure.
      */
-    public ResponseEntity<Map<String, String>> updateAppointment(Appointment appointment) {
+    public ResponseEntity<Map<String, String>> updateAppointment(Appointment appointment, Long authenticatedPatientId) {
         
         // 1. Check if the appointment exists
-        Appointment existingAppointment = appointmentRepository.findById(appointment.getId()).orElse(null);
+        Appointment existingAppointment = appointment.getId() == null
+                ? null
+                : appointmentRepository.findById(appointment.getId()).orElse(null);
 
         if (existingAppointment == null) {
             return new ResponseEntity<>(
@@ -121,40 +294,90 @@ public class AppointmentService {
                     HttpStatus.NOT_FOUND);
         }
 
-        // 2. Validate the update (e.g., check for time conflicts, valid IDs)
-        Map<String, String> validationErrors = validateAppointment(appointment);
-
-        if (!validationErrors.isEmpty()) {
-            return new ResponseEntity<>(validationErrors, HttpStatus.BAD_REQUEST);
+        // Authorization: Ensure the patient updating is the one who booked it
+        if (!existingAppointment.getPatientId().equals(authenticatedPatientId)) {
+            return new ResponseEntity<>(
+                    Collections.singletonMap("error", "Unauthorized to update this appointment."),
+                    HttpStatus.FORBIDDEN);
+        }
+        // The appointment stays with its patient; the body cannot move it to someone else
+        appointment.setPatientId(existingAppointment.getPatientId());
+        if (!isComplete(appointment)) {
+            return new ResponseEntity<>(
+                    Collections.singletonMap("error", BookingResult.INVALID_REQUEST.getMessage()),
+                    HttpStatus.BAD_REQUEST);
         }
 
-        // 3. Update fields (assuming the input 'appointment' DTO fields are mapped to the entity)
-        // In a real application, you'd carefully map only editable fields
-        existingAppointment.setDoctorId(appointment.getDoctorId());
-        existingAppointment.setAppointmentTime(appointment.getAppointmentTime());
-        existingAppointment.setStatus(appointment.getStatus());
-        // ... set other fields
-
+        // 2. Validate the update (e.g., check for time conflicts, valid IDs).
+        // Only non-cancelled appointments occupy a slot. The slot needs checking whenever the row
+        // occupies one afterwards that it did not occupy before: a move, or a reactivation in place.
+        Long previousDoctorId = existingAppointment.getDoctorId();
+        LocalDateTime previousTime = existingAppointment.getAppointmentTime();
+        int previousStatus = existingAppointment.getStatus();
+        boolean slotChanged = !previousDoctorId.equals(appointment.getDoctorId())
+                || !previousTime.equals(appointment.getAppointmentTime());
+        boolean occupiedBefore = occupiesSlot(previousStatus);
+        boolean occupiedAfter = occupiesSlot(appointment.getStatus());
+        boolean releasesPrevious = occupiedBefore && (slotChanged || !occupiedAfter);
+        boolean claimsNew = occupiedAfter && (slotChanged || !occupiedBefore);
+
+        // Moving into a slot goes through the same per-doctor lock as a new booking
+        ReentrantLock lock = bookingLockFor(appointment.getDoctorId());
+        lock.lock();
         try {
-            appointmentRepository.save(existingAppointment);
+            BookingResult rejection = validateAppointment(appointment, claimsNew);
+
+            if (rejection != null) {
+                return new ResponseEntity<>(
+                        Collections.singletonMap("error", rejection.getMessage()),
+                        rejection == BookingResult.SLOT_UNAVAILABLE ? HttpStatus.CONFLICT : HttpStatus.BAD_REQUEST);
+            }
+
+            // 3. Update fields (assuming the input 'appointment' DTO fields are mapped to the entity)
+            // In a real application, you'd carefully map only editable fields
+            existingAppointment.setDoctorId(appointment.getDoctorId());
+            existingAppointment.setAppointmentTime(appointment.getAppointmentTime());
+            existingAppointment.setStatus(appointment.getStatus());
+            // ... set other fields
+
+            appointmentRepository.saveAndFlush(existingAppointment);
+            if (releasesPrevious) {
+                availabilityIndex.markFree(previousDoctorId, previousTime);
+            }
+            if (claimsNew) {
+                availabilityIndex.markBooked(existingAppointment.getDoctorId(), existingAppointment.getAppointmentTime());
+            }
+            reportService.recordUpdated(previousDoctorId, previousTime, previousStatus, existingAppointment);
             return new ResponseEntity<>(
                     Collections.singletonMap("message", "Appointment updated successfully."),
                     HttpStatus.OK);
+        } catch (DataIntegrityViolationException e) {
+            if (isSlotConflict(e)) {
+                return new ResponseEntity<>(
+                        Collections.singletonMap("error", "Time slot already booked for this doctor."),
+                        HttpStatus.CONFLICT);
+            }
+            System.err.println("Error updating appointment: " + e.getMessage());
+            return new ResponseEntity<>(
+                    Collections.singletonMap("error", "Failed to save updated appointment."),
+                    HttpStatus.INTERNAL_SERVER_ERROR);
         } catch (Exception e) {
             return new ResponseEntity<>(
                     Collections.singletonMap("error", "Failed to save updated appointment."),
                     HttpStatus.INTERNAL_SERVER_ERROR);
+        } finally {
+            lock.unlock();
         }
     }
 
     /**
      * Cancels an existing appointment.
-     * Assumes token contains user ID (patient ID) for authorization.
+     * Only the patient who booked the appointment may cancel it.
      * * @param id The ID of the appointment to cancel.
-     * @param token The authorization token.
+     * @param authenticatedPatientId The ID of the authenticated patient.
      * @return A response message indicating success or failure.
      */
-    public ResponseEntity<Map<String, String>> cancelAppointment(long id, String token) {
+    public ResponseEntity<Map<String, String>> cancelAppointment(long id, Long authenticatedPatientId) {
         
         Appointment appointmentToCancel = appointmentRepository.findById(id).orElse(null);
 
@@ -164,34 +387,28 @@ public class AppointmentService {
                     HttpStatus.NOT_FOUND);
         }
 
-        // 1. Authorization Check: Get user ID from token
-        // Assuming tokenService.validateToken returns user details if valid
-        Map<String, String> tokenInfo = tokenService.validateToken(token, "patient"); // Check if patient
-        
-        if (tokenInfo.isEmpty() || !tokenInfo.containsKey("userId")) {
-             return new ResponseEntity<>(
-                    Collections.singletonMap("error", "Invalid or expired token."),
-                    HttpStatus.UNAUTHORIZED);
-        }
-
-        Long authenticatedPatientId = Long.parseLong(tokenInfo.get("userId"));
-
-        // 2. Authorization: Ensure the patient cancelling is the one who booked it
+        // 1. Authorization: Ensure the patient cancelling is the one who booked it
         if (!appointmentToCancel.getPatientId().equals(authenticatedPatientId)) {
             return new ResponseEntity<>(
                     Collections.singletonMap("error", "Unauthorized to cancel this appointment."),
                     HttpStatus.FORBIDDEN);
         }
 
-        // 3. Delete the appointment
+        // 2. Mark the appointment as cancelled (a single UPDATE; the row is kept for history)
         try {
-            appointmentRepository.delete(appointmentToCancel);
+            if (appointmentRepository.cancelById(id) == 0) {
+                return new ResponseEntity<>(
+                        Collections.singletonMap("error", "Only scheduled appointments can be cancelled."),
+                        HttpStatus.CONFLICT);
+            }
+            availabilityIndex.markFree(appointmentToCancel.getDoctorId(), appointmentToCancel.getAppointmentTime());
+            reportService.recordCancelled(appointmentToCancel.getDoctorId(), appointmentToCancel.getAppointmentTime());
             return new ResponseEntity<>(
                     Collections.singletonMap("message", "Appointment cancelled successfully."),
                     HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(
-                    Collections.singletonMap("error", "Failed to delete appointment."),
+                    Collections.singletonMap("error", "Failed to cancel appointment."),
                     HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
@@ -201,29 +418,20 @@ public class AppointmentService {
      * with optional filtering by patient name.
      * * @param pname Patient name to filter by (can be null/empty).
      * @param date The date for appointments.
-     * @param token The authorization token (used to identify the doctor).
-     * @return A map containing the list of AppointmentDTOs or an error message.
+     * @param doctorId The ID of the authenticated doctor.
+     * @param compact Whether to return compact AppointmentSummaryDTOs (no patient contact details).
+     * @return A map containing the list of AppointmentDTOs or AppointmentSummaryDTOs.
      */
-    public Map<String, Object> getAppointment(String pname, LocalDate date, String token) {
+    public Map<String, Object> getAppointment(String pname, LocalDate date, Long doctorId, boolean compact) {
         Map<String, Object> response = new HashMap<>();
 
-        // 1. Authorization: Extract Doctor ID from the token
-        Map<String, String> tokenInfo = tokenService.validateToken(token, "doctor");
-        
-        if (tokenInfo.isEmpty() || !tokenInfo.containsKey("userId")) {
-            response.put("error", "Invalid or unauthorized token.");
-            return response;
-        }
-
-        Long doctorId = Long.parseLong(tokenInfo.get("userId"));
-
-        // 2. Define Time Range for the entire day
+        // 1. Define Time Range for the entire day
         LocalDateTime startOfDay = date.atStartOfDay();
         LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
 
         List<Appointment> appointments;
 
-        // 3. Fetch appointments based on filtering criteria
+        // 2. Fetch appointments based on filtering criteria
         if (pname != null && !pname.trim().isEmpty()) {
             // Filter by doctor ID, partial patient name, and time range
             appointments = appointmentRepository.findByDoctorIdAndPatient_NameContainingIgnoreCaseAndAppointmentTimeBetween(
@@ -234,38 +442,29 @@ public class AppointmentService {
                     doctorId, startOfDay, endOfDay);
         }
 
-        // 4. Convert Appointment entities to AppointmentDTOs
-        List<AppointmentDTO> dtoList = appointments.stream()
-            .map(this::convertToDto) // Helper method to map entity to DTO
-            .collect(Collectors.toList());
-
-        response.put("appointments", dtoList);
+        // 3. Convert Appointment entities to DTOs (names resolved in bulk)
+        response.put("appointments", compact
+                ? appointmentDtoAssembler.toSummaries(appointments)
+                : appointmentDtoAssembler.toDtos(appointments));
         return response;
     }
 
     /**
-     * Helper method to convert an Appointment entity to an AppointmentDTO.
-     * In a real application, this would fetch Doctor/Patient names from repositories.
+     * Streaming variant of getAppointment: writes the doctor's appointments for the date to the
+     * generator straight from a database cursor, without building the full list.
+     * * @param pname Patient name to filter by (can be null/empty).
+     * @param date The date for appointments.
+     * @param doctorId The ID of the authenticated doctor.
+     * @param compact Whether to write compact AppointmentSummaryDTOs (no patient contact details).
+     * @param json The generator to write the DTO objects to (inside an open array).
      */
-    private AppointmentDTO convertToDto(Appointment appointment) {
-        // Dummy data for doctorName, patientName, etc., as we don't have the entity structure here.
-        // In a real scenario, you'd use patientRepository.findById(appointment.getPatientId()) etc.
-        Patient patient = patientRepository.findById(appointment.getPatientId()).orElse(new Patient());
-        String patientFullName = patient.getName() != null ? patient.getName() : "Unknown Patient";
-        String doctorFullName = doctorRepository.findById(appointment.getDoctorId())
-                                .map(d -> d.getFirstName() + " " + d.getLastName()).orElse("Unknown Doctor");
-
-        return new AppointmentDTO(
-            appointment.getId(),
-            appointment.getDoctorId(),
-            doctorFullName,
-            appointment.getPatientId(),
-            patientFullName,
-            patient.getEmail(),
-            patient.getPhone(),
-            patient.getAddress(),
-            appointment.getAppointmentTime(),
-            appointment.getStatus()
-        );
+    @Transactional(readOnly = true)
+    public void writeAppointments(String pname, LocalDate date, Long doctorId, boolean compact, JsonGenerator json)
+            throws IOException {
+        String patientName = pname != null && !pname.trim().isEmpty() ? pname : null;
+        try (Stream<Appointment> appointments = appointmentRepository.streamByDoctorIdAndAppointmentTimeBetween(
+                doctorId, patientName, date.atStartOfDay(), date.atTime(LocalTime.MAX))) {
+            appointmentDtoAssembler.writeJson(appointments, json, compact);
+        }
     }
 }
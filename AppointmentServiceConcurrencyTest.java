@@ -0,0 +1,167 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.model.Appointment;
+import com.example.yourprojectname.repository.AppointmentRepository;
+import com.example.yourprojectname.repository.DoctorRepository;
+import com.example.yourprojectname.repository.PatientRepository;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Stress test for the booking path: many threads (and several service instances sharing one
+ * "database") book the same slots at once, and every slot must end up booked exactly once.
+ * The repository mock enforces uk_doctor_slot the way the database does.
+ */
+class AppointmentServiceConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int ATTEMPTS_PER_SLOT = 200;
+    private static final LocalDateTime SLOT = LocalDateTime.of(2030, 1, 7, 9, 0);
+
+    // (doctorId, time) -> appointment holding the slot, i.e. the unique key
+    private final Map<String, Appointment> database = new ConcurrentHashMap<>();
+
+    private AppointmentRepository appointmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = mock(AppointmentRepository.class);
+        when(appointmentRepository.checkBookingParticipants(anyLong(), anyLong())).thenReturn(List.of(true));
+        when(appointmentRepository.saveAndFlush(any(Appointment.class))).thenAnswer(invocation -> {
+            Appointment appointment = invocation.getArgument(0);
+            if (database.putIfAbsent(key(appointment.getDoctorId(), appointment.getAppointmentTime()), appointment) != null) {
+                throw new DataIntegrityViolationException("Duplicate entry",
+                        new ConstraintViolationException("Duplicate entry", new SQLException(), "appointments.uk_doctor_slot"));
+            }
+            return appointment;
+        });
+        when(appointmentRepository.findAppointmentTimesByDoctorIdAndAppointmentTimeBetween(anyLong(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Long doctorId = invocation.getArgument(0);
+                    LocalDateTime start = invocation.getArgument(1);
+                    LocalDateTime end = invocation.getArgument(2);
+                    List<LocalDateTime> times = new ArrayList<>();
+                    for (Appointment appointment : database.values()) {
+                        LocalDateTime time = appointment.getAppointmentTime();
+                        if (appointment.getDoctorId().equals(doctorId) && !time.isBefore(start) && !time.isAfter(end)) {
+                            times.add(time);
+                        }
+                    }
+                    return times;
+                });
+    }
+
+    @Test
+    void sameSlotIsBookedExactlyOnceWithinOneInstance() throws Exception {
+        AppointmentService service = newInstance();
+
+        List<BookingResult> results = bookConcurrently(List.of(service), List.of(1L));
+
+        assertEquals(1, count(results, BookingResult.BOOKED));
+        assertEquals(ATTEMPTS_PER_SLOT - 1, count(results, BookingResult.SLOT_UNAVAILABLE));
+        assertEquals(1, database.size());
+    }
+
+    @Test
+    void sameSlotIsBookedExactlyOnceAcrossInstances() throws Exception {
+        // Separate instances share no locks or bitmaps; only the unique key is shared
+        List<AppointmentService> instances = List.of(newInstance(), newInstance(), newInstance());
+
+        List<BookingResult> results = bookConcurrently(instances, List.of(1L));
+
+        assertEquals(1, count(results, BookingResult.BOOKED));
+        assertEquals(ATTEMPTS_PER_SLOT - 1, count(results, BookingResult.SLOT_UNAVAILABLE));
+        assertEquals(1, database.size());
+    }
+
+    @Test
+    void differentDoctorsAreEachBookedOnce() throws Exception {
+        List<Long> doctorIds = List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+        List<AppointmentService> instances = List.of(newInstance(), newInstance());
+
+        List<BookingResult> results = bookConcurrently(instances, doctorIds);
+
+        assertEquals(doctorIds.size(), count(results, BookingResult.BOOKED));
+        assertEquals(doctorIds.size(), database.size());
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Helpers ---
+    // -------------------------------------------------------------------------
+
+    private AppointmentService newInstance() {
+        DoctorAvailabilityIndex availabilityIndex = new DoctorAvailabilityIndex(appointmentRepository, new DirectoryVersions());
+        return new AppointmentService(
+                appointmentRepository,
+                mock(PatientRepository.class),
+                mock(DoctorRepository.class),
+                mock(AppointmentDtoAssembler.class),
+                availabilityIndex,
+                mock(AppointmentReportService.class));
+    }
+
+    /**
+     * Books ATTEMPTS_PER_SLOT appointments for SLOT per doctor, spread over the instances,
+     * with all threads released at the same moment.
+     */
+    private List<BookingResult> bookConcurrently(List<AppointmentService> instances, List<Long> doctorIds)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<BookingResult>> futures = new ArrayList<>();
+        try {
+            for (Long doctorId : doctorIds) {
+                for (int i = 0; i < ATTEMPTS_PER_SLOT; i++) {
+                    AppointmentService service = instances.get(i % instances.size());
+                    Appointment appointment = new Appointment();
+                    appointment.setDoctorId(doctorId);
+                    appointment.setPatientId((long) i);
+                    appointment.setAppointmentTime(SLOT);
+                    appointment.setStatus(0);
+                    Callable<BookingResult> booking = () -> {
+                        start.await();
+                        return service.bookAppointment(appointment);
+                    };
+                    futures.add(executor.submit(booking));
+                }
+            }
+            start.countDown();
+
+            List<BookingResult> results = new ArrayList<>();
+            for (Future<BookingResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long count(List<BookingResult> results, BookingResult result) {
+        return results.stream().filter(r -> r == result).count();
+    }
+
+    private static String key(Long doctorId, LocalDateTime time) {
+        return doctorId + "@" + time;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.yourprojectname.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Compact variant of AppointmentDTO for list views such as the doctor's day list.
+ * Carries only IDs, names, time and status: no patient contact details and no derivative
+ * time fields, which clients can compute from appointmentTime.
+ */
+public class AppointmentSummaryDTO {
+
+    // --- Core Fields ---
+    private final Long id;
+    private final Long doctorId;
+    private final String doctorName;
+    private final Long patientId;
+    private final String patientName;
+    private final LocalDateTime appointmentTime;
+    private final int status;
+
+    public AppointmentSummaryDTO(
+            Long id,
+            Long doctorId,
+            String doctorName,
+            Long patientId,
+            String patientName,
+            LocalDateTime appointmentTime,
+            int status) {
+
+        this.id = id;
+        this.doctorId = doctorId;
+        this.doctorName = doctorName;
+        this.patientId = patientId;
+        this.patientName = patientName;
+        this.appointmentTime = appointmentTime;
+        this.status = status;
+    }
+
+    // --- Getter Methods ---
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getDoctorId() {
+        return doctorId;
+    }
+
+    public String getDoctorName() {
+        return doctorName;
+    }
+
+    public Long getPatientId() {
+        return patientId;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public LocalDateTime getAppointmentTime() {
+        return appointmentTime;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
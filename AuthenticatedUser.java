@@ -0,0 +1,35 @@
+package com.example.yourprojectname.service;
+
+/**
+ * The user a request was authenticated as.
+ * Created once per request by AuthenticationInterceptor after the token has been verified,
+ * and stored as a request attribute so controllers and services never re-verify the token.
+ */
+public final class AuthenticatedUser {
+
+    // Name of the request attribute holding the principal
+    public static final String REQUEST_ATTRIBUTE = "authenticatedUser";
+
+    private final Long userId;
+    private final String role;
+
+    public AuthenticatedUser(Long userId, String role) {
+        this.userId = userId;
+        this.role = role;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    /**
+     * Checks whether the user has the given role ("admin", "doctor", "patient"), ignoring case.
+     */
+    public boolean hasRole(String requiredRole) {
+        return role.equalsIgnoreCase(requiredRole);
+    }
+}
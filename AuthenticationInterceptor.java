@@ -0,0 +1,68 @@
+package com.example.yourprojectname.config;
+
+import com.example.yourprojectname.service.AuthenticatedUser;
+import com.example.yourprojectname.service.TokenService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Verifies the request's token exactly once, before the controller runs.
+ * The token is sent as "Authorization: Bearer <token>", keeping URLs identical for every user
+ * so shared responses can be cached; the browser-navigated dashboard pages, which cannot set
+ * headers, still pass it as the {token} path variable.
+ * The resulting AuthenticatedUser is stored as a request attribute; controllers check the
+ * role they need with Service.authorize and pass the user ID on to the services.
+ * Requests without a token, or with an invalid one, get no principal and are rejected
+ * by the controllers that require one.
+ */
+@Component
+public class AuthenticationInterceptor implements HandlerInterceptor {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TokenService tokenService;
+
+    @Autowired
+    public AuthenticationInterceptor(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String token = resolveToken(request);
+        if (token != null) {
+            AuthenticatedUser user = tokenService.authenticate(token);
+            if (user != null) {
+                request.setAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE, user);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Extracts the raw token of a request: the Authorization bearer token if present,
+     * otherwise the {token} path variable of the matched endpoint.
+     *
+     * @param request The current request.
+     * @return The token, or null if the request carries none.
+     */
+    @SuppressWarnings("unchecked")
+    public static String resolveToken(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            String token = header.substring(BEARER_PREFIX.length()).trim();
+            return token.isEmpty() ? null : token;
+        }
+
+        Map<String, String> pathVariables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        return pathVariables != null ? pathVariables.get("token") : null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.yourprojectname.service;
+
+/**
+ * Outcome of a booking attempt made through AppointmentService.
+ * Replaces the former int status codes so callers can map each case explicitly.
+ */
+public enum BookingResult {
+
+    BOOKED("Appointment booked successfully."),
+    INVALID_REQUEST("Doctor and appointment time are required."),
+    DOCTOR_NOT_FOUND("Doctor not found."),
+    PATIENT_NOT_FOUND("Patient not found."),
+    SLOT_UNAVAILABLE("Appointment time is unavailable for the doctor."),
+    ERROR("Failed to book appointment due to service error.");
+
+    private final String message;
+
+    BookingResult(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Returns a user-facing message describing the outcome.
+     */
+    public String getMessage() {
+        return message;
+    }
+}
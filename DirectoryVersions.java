@@ -0,0 +1,109 @@
+package com.example.yourprojectname.service;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version counters for the public doctor endpoints, used to build strong ETags.
+ * The directory version is bumped by every doctor write in DoctorService; availability
+ * versions are bumped per (doctor, date) and per date by every appointment write that
+ * goes through DoctorAvailabilityIndex. A matching If-None-Match can then be answered
+ * with 304 before any query runs or anything is serialized.
+ * Counters live in memory only, so every ETag carries the instance's start time:
+ * after a restart (or on another instance) old ETags simply stop matching.
+ */
+@Component
+public class DirectoryVersions {
+
+    // Once this many (doctor, date) counters exist, counters for past dates are dropped
+    private static final int MAX_ENTRIES_BEFORE_PRUNE = 100_000;
+
+    private final long epoch = System.currentTimeMillis();
+    private final AtomicLong directoryVersion = new AtomicLong();
+    // Bumped whenever counters are dropped, so a re-created counter never repeats an old ETag
+    private final AtomicLong pruneGeneration = new AtomicLong();
+
+    private final Map<AvailabilityKey, AtomicLong> doctorDateVersions = new ConcurrentHashMap<>();
+    private final Map<LocalDate, AtomicLong> dateVersions = new ConcurrentHashMap<>();
+
+    private record AvailabilityKey(Long doctorId, LocalDate date) {
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Writes ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Records a change to doctor records (save, update or delete).
+     */
+    public void bumpDirectory() {
+        directoryVersion.incrementAndGet();
+    }
+
+    /**
+     * Records a booking change for a doctor on a date.
+     */
+    public void bumpAvailability(Long doctorId, LocalDate date) {
+        pruneIfNeeded();
+        doctorDateVersions.computeIfAbsent(new AvailabilityKey(doctorId, date), k -> new AtomicLong()).incrementAndGet();
+        dateVersions.computeIfAbsent(date, d -> new AtomicLong()).incrementAndGet();
+    }
+
+    // -------------------------------------------------------------------------
+    // --- ETags ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * ETag for responses that depend only on doctor records (directory pages, name and specialty filters).
+     */
+    public String directoryEtag() {
+        return etag(epoch, directoryVersion.get());
+    }
+
+    /**
+     * ETag for responses that also depend on every doctor's bookings on a date (AM/PM filter).
+     */
+    public String directoryEtag(LocalDate date) {
+        return etag(epoch, directoryVersion.get(), pruneGeneration.get(), versionOf(dateVersions.get(date)));
+    }
+
+    /**
+     * ETag for the availability of one doctor on one date.
+     */
+    public String availabilityEtag(Long doctorId, LocalDate date) {
+        return etag(epoch, directoryVersion.get(), pruneGeneration.get(),
+                versionOf(doctorDateVersions.get(new AvailabilityKey(doctorId, date))));
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Private Helpers ---
+    // -------------------------------------------------------------------------
+
+    private static long versionOf(AtomicLong counter) {
+        return counter == null ? 0 : counter.get();
+    }
+
+    private static String etag(long... parts) {
+        StringBuilder tag = new StringBuilder("\"");
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                tag.append('-');
+            }
+            tag.append(Long.toString(parts[i], 36));
+        }
+        return tag.append('"').toString();
+    }
+
+    private void pruneIfNeeded() {
+        if (doctorDateVersions.size() >= MAX_ENTRIES_BEFORE_PRUNE) {
+            LocalDate today = LocalDate.now();
+            pruneGeneration.incrementAndGet();
+            doctorDateVersions.keySet().removeIf(k -> k.date().isBefore(today));
+            dateVersions.keySet().removeIf(d -> d.isBefore(today));
+        }
+    }
+}
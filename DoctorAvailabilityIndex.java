@@ -0,0 +1,240 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.repository.AppointmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of booked slots, kept as one bitmap per (doctor, date).
+ * Bit i is set when ALL_SLOTS.get(i) is booked. A bitmap is loaded from the database
+ * the first time a (doctor, date) is requested and is then maintained incrementally
+ * by AppointmentService, so availability lookups and slot checks are simple bit tests.
+ * Every incremental change also bumps the (doctor, date) version in DirectoryVersions.
+ * The database remains authoritative: nothing is persisted, and a restart simply reloads on demand.
+ * Writes made by other instances (or directly in the database) never reach this index, so a
+ * bitmap is reloaded once it is older than availability.index.ttl-seconds, and a "booked" bit is
+ * only a hint: isSlotFree reloads the bitmap before it reports a slot as taken.
+ */
+@Component
+public class DoctorAvailabilityIndex {
+
+    // Standard 1-hour working slots (replace with actual logic, perhaps from a Doctor entity field)
+    public static final List<LocalTime> ALL_SLOTS = List.of(
+            LocalTime.of(8, 0), LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0),
+            LocalTime.of(13, 0), LocalTime.of(14, 0), LocalTime.of(15, 0), LocalTime.of(16, 0)
+    );
+
+    // Once the index holds this many days, expired bitmaps and bitmaps for past dates are dropped
+    private static final int MAX_ENTRIES_BEFORE_PRUNE = 100_000;
+
+    // Available-slot lists for every possible bitmap, so lookups never build a new list
+    private static final List<List<String>> AVAILABLE_SLOTS_BY_MASK = buildAvailableSlotLists();
+
+    private final AppointmentRepository appointmentRepository;
+    private final DirectoryVersions directoryVersions;
+    private final Map<SlotKey, Bitmap> bookedSlots = new ConcurrentHashMap<>();
+
+    // How long a loaded bitmap is trusted before it is read from the database again
+    @Value("${availability.index.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Autowired
+    public DoctorAvailabilityIndex(AppointmentRepository appointmentRepository, DirectoryVersions directoryVersions) {
+        this.appointmentRepository = appointmentRepository;
+        this.directoryVersions = directoryVersions;
+    }
+
+    private record SlotKey(Long doctorId, LocalDate date) {
+    }
+
+    // A booked-slot bitmap and when it was read from the database, in epoch millis
+    private record Bitmap(int mask, long loadedAt) {
+    }
+
+    private static List<List<String>> buildAvailableSlotLists() {
+        List<List<String>> lists = new ArrayList<>();
+        for (int mask = 0; mask < (1 << ALL_SLOTS.size()); mask++) {
+            List<String> available = new ArrayList<>();
+            for (int i = 0; i < ALL_SLOTS.size(); i++) {
+                if ((mask & (1 << i)) == 0) {
+                    available.add(ALL_SLOTS.get(i).toString()); // e.g., "08:00"
+                }
+            }
+            lists.add(Collections.unmodifiableList(available));
+        }
+        return Collections.unmodifiableList(lists);
+    }
+
+    /**
+     * Returns the bit for the given time, or 0 if the time is not one of ALL_SLOTS.
+     */
+    public static int slotBit(LocalTime time) {
+        int index = ALL_SLOTS.indexOf(time);
+        return index < 0 ? 0 : 1 << index;
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Lookups ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns the booked-slot bitmap for a doctor on a date, loading it from the database on first use
+     * and again once it has expired.
+     */
+    public int getBookedMask(Long doctorId, LocalDate date) {
+        SlotKey key = new SlotKey(doctorId, date);
+        Bitmap bitmap = bookedSlots.get(key);
+        if (bitmap != null && !isExpired(bitmap)) {
+            return bitmap.mask();
+        }
+        pruneIfNeeded();
+        // compute blocks concurrent updates to this key until the load completes,
+        // so a booking saved while the bitmap is loading is never lost
+        return bookedSlots.compute(key, (k, current) -> current != null && !isExpired(current)
+                ? current
+                : load(k, current)).mask();
+    }
+
+    /**
+     * Returns the free slots (e.g., "08:00") for a doctor on a date.
+     */
+    public List<String> getAvailableSlots(Long doctorId, LocalDate date) {
+        return AVAILABLE_SLOTS_BY_MASK.get(getBookedMask(doctorId, date));
+    }
+
+    /**
+     * Returns the free slots (e.g., "08:00") for a booked-slot bitmap.
+     */
+    public static List<String> getAvailableSlots(int bookedMask) {
+        return AVAILABLE_SLOTS_BY_MASK.get(bookedMask);
+    }
+
+    /**
+     * Computes booked-slot bitmaps for several doctors over a date range with a single query.
+     * The result is not cached in the index; it is meant for wide, read-only views such as a week grid.
+     *
+     * @param doctorIds The doctors to include (iteration order is preserved in the result).
+     * @param from The first date (inclusive).
+     * @param to The last date (inclusive).
+     * @return For each doctor, one bitmap per day from {@code from} to {@code to}.
+     */
+    public Map<Long, int[]> loadBookedMasks(Collection<Long> doctorIds, LocalDate from, LocalDate to) {
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        Map<Long, int[]> masks = new LinkedHashMap<>();
+        for (Long doctorId : doctorIds) {
+            masks.put(doctorId, new int[days]);
+        }
+        if (masks.isEmpty()) {
+            return masks;
+        }
+
+        List<Object[]> rows = appointmentRepository.findDoctorIdsAndAppointmentTimesBetween(
+                masks.keySet(), from.atStartOfDay(), to.atTime(LocalTime.MAX));
+
+        for (Object[] row : rows) {
+            LocalDateTime time = (LocalDateTime) row[1];
+            int day = (int) ChronoUnit.DAYS.between(from, time.toLocalDate());
+            masks.get((Long) row[0])[day] |= slotBit(time.toLocalTime());
+        }
+        return masks;
+    }
+
+    /**
+     * Checks whether the given time is a working slot that is still free for the doctor.
+     * A free bit is trusted; a booked bit may be stale (cancelled on another instance), so the
+     * bitmap is reloaded from the database before the slot is reported as taken.
+     */
+    public boolean isSlotFree(Long doctorId, LocalDateTime time) {
+        int bit = slotBit(time.toLocalTime());
+        if (bit == 0) {
+            return false;
+        }
+        if ((getBookedMask(doctorId, time.toLocalDate()) & bit) == 0) {
+            return true;
+        }
+        Bitmap reloaded = bookedSlots.compute(new SlotKey(doctorId, time.toLocalDate()), this::load);
+        return (reloaded.mask() & bit) == 0;
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Incremental Maintenance (called after successful writes) ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Marks a slot as booked. Bitmaps that are not loaded yet are left alone; they will read the row from the database.
+     */
+    public void markBooked(Long doctorId, LocalDateTime time) {
+        int bit = slotBit(time.toLocalTime());
+        bookedSlots.computeIfPresent(new SlotKey(doctorId, time.toLocalDate()),
+                (k, bitmap) -> new Bitmap(bitmap.mask() | bit, bitmap.loadedAt()));
+        directoryVersions.bumpAvailability(doctorId, time.toLocalDate());
+    }
+
+    /**
+     * Marks a slot as free again (after a cancellation or a move to another time).
+     */
+    public void markFree(Long doctorId, LocalDateTime time) {
+        int bit = slotBit(time.toLocalTime());
+        bookedSlots.computeIfPresent(new SlotKey(doctorId, time.toLocalDate()),
+                (k, bitmap) -> new Bitmap(bitmap.mask() & ~bit, bitmap.loadedAt()));
+        directoryVersions.bumpAvailability(doctorId, time.toLocalDate());
+    }
+
+    /**
+     * Drops every bitmap for a doctor, e.g. after the doctor is deleted.
+     */
+    public void evictDoctor(Long doctorId) {
+        bookedSlots.keySet().removeIf(k -> k.doctorId().equals(doctorId));
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Private Helpers ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Reads a bitmap from the database. If it differs from the one it replaces, a write from
+     * elsewhere was missed, so the (doctor, date) version is bumped to invalidate cached ETags.
+     */
+    private Bitmap load(SlotKey key, Bitmap previous) {
+        int mask = loadMask(key.doctorId(), key.date());
+        if (previous != null && previous.mask() != mask) {
+            directoryVersions.bumpAvailability(key.doctorId(), key.date());
+        }
+        return new Bitmap(mask, System.currentTimeMillis());
+    }
+
+    private boolean isExpired(Bitmap bitmap) {
+        return System.currentTimeMillis() - bitmap.loadedAt() >= ttlSeconds * 1000;
+    }
+
+    private int loadMask(Long doctorId, LocalDate date) {
+        List<LocalDateTime> bookedTimes = appointmentRepository.findAppointmentTimesByDoctorIdAndAppointmentTimeBetween(
+                doctorId, date.atStartOfDay(), date.atTime(LocalTime.MAX));
+
+        int mask = 0;
+        for (LocalDateTime time : bookedTimes) {
+            mask |= slotBit(time.toLocalTime());
+        }
+        return mask;
+    }
+
+    private void pruneIfNeeded() {
+        if (bookedSlots.size() >= MAX_ENTRIES_BEFORE_PRUNE) {
+            LocalDate today = LocalDate.now();
+            bookedSlots.entrySet().removeIf(e -> e.getKey().date().isBefore(today) || isExpired(e.getValue()));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.model.Doctor;
+import com.example.yourprojectname.repository.DoctorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of doctors grouped by normalized specialty.
+ * Each specialty is loaded from the database on first request and kept until a doctor
+ * is saved, updated or deleted through DoctorService, which invalidates the whole catalog.
+ * Hit and miss counts are exposed through getStats().
+ */
+@Component
+public class DoctorCatalogCache {
+
+    private final DoctorRepository doctorRepository;
+
+    // Normalized specialty -> doctors of that specialty, ordered by ID (unmodifiable)
+    private final Map<String, List<Doctor>> doctorsBySpecialty = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so loads that started before it are not cached
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Autowired
+    public DoctorCatalogCache(DoctorRepository doctorRepository) {
+        this.doctorRepository = doctorRepository;
+    }
+
+    /**
+     * Returns the doctors of a specialty (case-insensitive), ordered by ID.
+     *
+     * @param specialty The specialty to look up.
+     * @return An unmodifiable list of doctors; empty if none match.
+     */
+    public List<Doctor> getBySpecialty(String specialty) {
+        String key = normalize(specialty);
+        List<Doctor> doctors = doctorsBySpecialty.get(key);
+        if (doctors != null) {
+            hits.increment();
+            return doctors;
+        }
+
+        misses.increment();
+        long loadGeneration = currentGeneration();
+        // Query with the trimmed specialty, so the result matches the normalized key it is cached under
+        List<Doctor> loaded = new ArrayList<>(doctorRepository.findBySpecialtyIgnoreCase(specialty.trim()));
+        loaded.sort(Comparator.comparing(Doctor::getId));
+        doctors = Collections.unmodifiableList(loaded);
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                List<Doctor> existing = doctorsBySpecialty.putIfAbsent(key, doctors);
+                return existing != null ? existing : doctors;
+            }
+        }
+        return doctors;
+    }
+
+    /**
+     * Drops every cached specialty. Called after any doctor write.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        doctorsBySpecialty.clear();
+        invalidations.increment();
+    }
+
+    /**
+     * Returns hit/miss counters for monitoring.
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("invalidations", invalidations.sum());
+        stats.put("cachedSpecialties", doctorsBySpecialty.size());
+        return stats;
+    }
+
+    private synchronized long currentGeneration() {
+        return generation;
+    }
+
+    private static String normalize(String specialty) {
+        return specialty.trim().toLowerCase(Locale.ROOT);
+    }
+}
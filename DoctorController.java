@@ -1,19 +1,35 @@
 package com.example.yourprojectname.controller;
 
+import com.example.yourprojectname.config.AuthenticationInterceptor;
 import com.example.yourprojectname.dto.Login;
 import com.example.yourprojectname.model.Doctor;
+import com.example.yourprojectname.service.AuthenticatedUser;
+import com.example.yourprojectname.service.DirectoryVersions;
+import com.example.yourprojectname.service.DoctorAvailabilityIndex;
 import com.example.yourprojectname.service.DoctorService;
 import com.example.yourprojectname.service.Service; // Central validation/coordination service
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * REST Controller for handling Doctor operations, including CRUD, login, and filtering.
@@ -22,13 +38,46 @@ import java.util.Map;
 @RequestMapping("${api.path}" + "doctor") // Base URL: e.g., /api/v1/doctor
 public class DoctorController {
 
+    // Largest date range accepted by the availability range endpoint
+    private static final int MAX_AVAILABILITY_RANGE_DAYS = 31;
+    // Most doctorId parameters accepted by the availability range endpoint
+    private static final int MAX_AVAILABILITY_DOCTORS = 100;
+
+    // How long shared caches may serve the public doctor endpoints without revalidating
+    @Value("${doctor.public.cache-max-age-seconds:30}")
+    private long publicMaxAgeSeconds;
+
     private final DoctorService doctorService;
     private final Service service;
+    private final ObjectMapper objectMapper;
+    private final DirectoryVersions directoryVersions;
 
     @Autowired
-    public DoctorController(DoctorService doctorService, Service service) {
+    public DoctorController(DoctorService doctorService, Service service, ObjectMapper objectMapper,
+                            DirectoryVersions directoryVersions) {
         this.doctorService = doctorService;
         this.service = service;
+        this.objectMapper = objectMapper;
+        this.directoryVersions = directoryVersions;
+    }
+
+    // --- Cache-Control for public, non-personal responses (doctor directory, filter, availability) ---
+    private CacheControl publicCacheControl() {
+        return CacheControl.maxAge(publicMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
+    }
+
+    // --- Conditional GET: 304 if the client's If-None-Match is current, otherwise build the body ---
+    private <T> ResponseEntity<T> conditionalResponse(WebRequest webRequest, String etag, Supplier<T> body) {
+        if (webRequest.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(publicCacheControl())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(publicCacheControl())
+                .body(body.get());
     }
 
     // --- Helper for consistent error response creation ---
@@ -42,30 +91,100 @@ public class DoctorController {
 
     /**
      * Fetches the available time slots for a specific doctor on a given date.
-     * Endpoint: GET /doctor/availability/{user}/{doctorId}/{date}/{token}
+     * Public and identical for every caller, so the response may be cached by shared caches.
+     * The ETag changes only when a booking for this doctor and date changes.
+     * Answers 404 for an unknown or deleted doctor instead of listing every slot as free.
+     * Endpoint: GET /doctor/availability/{doctorId}/{date}
      */
-    @GetMapping("/availability/{user}/{doctorId}/{date}/{token}")
+    @GetMapping("/availability/{doctorId}/{date}")
     public ResponseEntity<Map<String, Object>> getDoctorAvailability(
-            @PathVariable String user,
             @PathVariable Long doctorId,
             @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
-            @PathVariable String token) {
+            WebRequest webRequest) {
 
-        // Validate Token for the requesting user (admin, patient, or doctor)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, user);
-        if (validationError != null) {
-            return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
+        if (!doctorService.isActiveDoctor(doctorId)) {
+            return new ResponseEntity<>(Collections.singletonMap("error", "Doctor not found"), HttpStatus.NOT_FOUND);
         }
 
-        // Fetch availability
-        List<String> availableSlots = doctorService.getDoctorAvailability(doctorId, date);
+        return conditionalResponse(webRequest, directoryVersions.availabilityEtag(doctorId, date), () -> {
+            // Fetch availability
+            List<String> availableSlots = doctorService.getDoctorAvailability(doctorId, date);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("doctorId", doctorId);
+            response.put("date", date.toString());
+            response.put("availableSlots", availableSlots);
+            return response;
+        });
+    }
+
+    /**
+     * Streams the available time slots for many doctors across a date range in one call.
+     * Doctors are selected by repeated doctorId parameters or, if none are given, by specialty.
+     * Unknown and deleted doctor IDs are left out; if none of the given IDs is a doctor, the answer is 404.
+     * The response is written incrementally, one doctor at a time:
+     * {"from": "...", "to": "...", "doctors": [{"doctorId": 1, "availability": {"2024-05-06": ["08:00", ...]}}]}
+     * Public; carries Cache-Control but no ETag, since it spans many (doctor, date) versions.
+     * Endpoint: GET /doctor/availability/range/{from}/{to}?doctorId=1&doctorId=2 or ?specialty=...
+     */
+    @GetMapping("/availability/range/{from}/{to}")
+    public ResponseEntity<?> getDoctorAvailabilityRange(
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @PathVariable @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(name = "doctorId", required = false) List<Long> doctorIds,
+            @RequestParam(required = false) String specialty) {
+
+        // 1. Validate the requested range
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_AVAILABILITY_RANGE_DAYS) {
+            return createErrorResponse(
+                    "Date range must be ascending and at most " + MAX_AVAILABILITY_RANGE_DAYS + " days",
+                    HttpStatus.BAD_REQUEST);
+        }
+        if ((doctorIds == null || doctorIds.isEmpty()) && specialty == null) {
+            return createErrorResponse("Provide doctorId or specialty", HttpStatus.BAD_REQUEST);
+        }
+        if (doctorIds != null && doctorIds.size() > MAX_AVAILABILITY_DOCTORS) {
+            return createErrorResponse("At most " + MAX_AVAILABILITY_DOCTORS + " doctorId values per request",
+                    HttpStatus.BAD_REQUEST);
+        }
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("doctorId", doctorId);
-        response.put("date", date.toString());
-        response.put("availableSlots", availableSlots);
+        // 2. Load booked-slot bitmaps with a single appointment query
+        Map<Long, int[]> bookedMasks = doctorService.getDoctorAvailabilityRange(doctorIds, specialty, from, to);
+        if (bookedMasks.isEmpty() && doctorIds != null && !doctorIds.isEmpty()) {
+            return createErrorResponse("Doctor not found", HttpStatus.NOT_FOUND);
+        }
 
-        return new ResponseEntity<>(response, HttpStatus.OK);
+        // 3. Stream the JSON response without materializing the slot lists
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeStringField("from", from.toString());
+                json.writeStringField("to", to.toString());
+                json.writeArrayFieldStart("doctors");
+                for (Map.Entry<Long, int[]> entry : bookedMasks.entrySet()) {
+                    json.writeStartObject();
+                    json.writeNumberField("doctorId", entry.getKey());
+                    json.writeObjectFieldStart("availability");
+                    int[] days = entry.getValue();
+                    for (int day = 0; day < days.length; day++) {
+                        json.writeArrayFieldStart(from.plusDays(day).toString());
+                        for (String slot : DoctorAvailabilityIndex.getAvailableSlots(days[day])) {
+                            json.writeString(slot);
+                        }
+                        json.writeEndArray();
+                    }
+                    json.writeEndObject();
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(publicCacheControl())
+                .body(body);
     }
 
     // -------------------------------------------------------------------------
@@ -73,13 +192,18 @@ public class DoctorController {
     // -------------------------------------------------------------------------
 
     /**
-     * Fetches a list of all doctors.
-     * Endpoint: GET /doctor
+     * Fetches one page of the doctor directory, ordered by ID.
+     * Pass the returned nextCursor as "after" to get the following page.
+     * Public and cacheable by shared caches; the ETag changes only when a doctor is added, updated or deleted.
+     * Endpoint: GET /doctor?after={cursor}&size={pageSize}
      */
     @GetMapping
-    public ResponseEntity<Map<String, Object>> getDoctors() {
-        List<Doctor> doctors = doctorService.getDoctors();
-        return new ResponseEntity<>(Collections.singletonMap("doctors", doctors), HttpStatus.OK);
+    public ResponseEntity<Map<String, Object>> getDoctors(
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size,
+            WebRequest webRequest) {
+        return conditionalResponse(webRequest, directoryVersions.directoryEtag(),
+                () -> service.filterDoctor(null, null, null, null, after, size));
     }
 
     // -------------------------------------------------------------------------
@@ -88,15 +212,15 @@ public class DoctorController {
 
     /**
      * Adds a new doctor to the system. Requires Admin token validation.
-     * Endpoint: POST /doctor/{token}
+     * Endpoint: POST /doctor
      */
-    @PostMapping("/{token}")
+    @PostMapping
     public ResponseEntity<Map<String, String>> addDoctor(
             @RequestBody Doctor doctor,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Admin only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "admin");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
         if (validationError != null) {
             return validationError;
         }
@@ -129,21 +253,30 @@ public class DoctorController {
         return doctorService.validateDoctor(login);
     }
 
+    /**
+     * Logs the doctor out by revoking the token sent in the Authorization header.
+     * Endpoint: POST /doctor/logout
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, String>> doctorLogout(HttpServletRequest request) {
+        return service.logout(AuthenticationInterceptor.resolveToken(request));
+    }
+
     // -------------------------------------------------------------------------
     // 5. Update Doctor Details (Admin Access)
     // -------------------------------------------------------------------------
 
     /**
      * Updates an existing doctor's details. Requires Admin token validation.
-     * Endpoint: PUT /doctor/{token}
+     * Endpoint: PUT /doctor
      */
-    @PutMapping("/{token}")
+    @PutMapping
     public ResponseEntity<Map<String, String>> updateDoctor(
             @RequestBody Doctor doctor,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Admin only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "admin");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
         if (validationError != null) {
             return validationError;
         }
@@ -168,15 +301,15 @@ public class DoctorController {
 
     /**
      * Deletes a doctor and all associated appointments. Requires Admin token validation.
-     * Endpoint: DELETE /doctor/{id}/{token}
+     * Endpoint: DELETE /doctor/{id}
      */
-    @DeleteMapping("/{id}/{token}")
+    @DeleteMapping("/{id}")
     public ResponseEntity<Map<String, String>> deleteDoctor(
             @PathVariable long id,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Admin only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "admin");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "admin");
         if (validationError != null) {
             return validationError;
         }
@@ -196,26 +329,54 @@ public class DoctorController {
     }
 
     // -------------------------------------------------------------------------
-    // 7. Filter Doctors
+    // 7. Doctor Name Typeahead
+    // -------------------------------------------------------------------------
+
+    /**
+     * Suggests doctors whose name starts with or contains the typed text.
+     * Endpoint: GET /doctor/suggest/{query}?limit=10
+     */
+    @GetMapping("/suggest/{query}")
+    public ResponseEntity<Map<String, Object>> suggestDoctors(
+            @PathVariable String query,
+            @RequestParam(defaultValue = "10") int limit,
+            WebRequest webRequest) {
+        return conditionalResponse(webRequest, directoryVersions.directoryEtag(),
+                () -> doctorService.suggestDoctorNames(query, Math.min(Math.max(limit, 1), 50)));
+    }
+
+    // -------------------------------------------------------------------------
+    // 8. Filter Doctors
     // -------------------------------------------------------------------------
 
     /**
      * Filters doctors based on name, time (AM/PM), and specialty.
      * Placeholder values "all" or "none" are expected for unused path variables.
-     * Endpoint: GET /doctor/filter/{name}/{time}/{speciality}
+     * The AM/PM filter keeps doctors with a free slot in that half-day on the given date (default: today).
+     * Results are paged like the directory: pass the returned nextCursor as "after". Public and cacheable;
+     * with an AM/PM filter the ETag also changes with any booking on that date.
+     * Endpoint: GET /doctor/filter/{name}/{time}/{speciality}?date=yyyy-MM-dd&after={cursor}&size={pageSize}
      */
     @GetMapping("/filter/{name}/{time}/{speciality}")
-    public Map<String, Object> filterDoctors(
+    public ResponseEntity<Map<String, Object>> filterDoctors(
             @PathVariable String name,
             @PathVariable String time,
-            @PathVariable String speciality) {
+            @PathVariable String speciality,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) Long after,
+            @RequestParam(required = false) Integer size,
+            WebRequest webRequest) {
 
         // Replace "all" or "none" with null before passing to service layer
         String filterName = name.equalsIgnoreCase("all") || name.equalsIgnoreCase("none") ? null : name;
         String filterTime = time.equalsIgnoreCase("all") || time.equalsIgnoreCase("none") ? null : time;
         String filterSpecialty = speciality.equalsIgnoreCase("all") || speciality.equalsIgnoreCase("none") ? null : speciality;
 
+        LocalDate day = date != null ? date : LocalDate.now();
+        String etag = filterTime != null ? directoryVersions.directoryEtag(day) : directoryVersions.directoryEtag();
+
         // The central service handles the complex filtering logic based on null/present parameters
-        return service.filterDoctor(filterName, filterSpecialty, filterTime);
+        return conditionalResponse(webRequest, etag,
+                () -> service.filterDoctor(filterName, filterSpecialty, filterTime, day, after, size));
     }
 }
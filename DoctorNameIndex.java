@@ -0,0 +1,239 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.model.Doctor;
+import com.example.yourprojectname.repository.DoctorRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over doctors' full names ("firstName lastName"), used for
+ * case-insensitive substring and prefix search instead of a LIKE '%x%' table scan.
+ * The index is built from the database on first use and kept current by DoctorService
+ * on save, update and delete.
+ */
+@Component
+public class DoctorNameIndex {
+
+    private static final int GRAM = 3;
+
+    private final DoctorRepository doctorRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Normalized full name per doctor ID, ordered by ID (what queries are matched against)
+    private final TreeMap<Long, String> names = new TreeMap<>();
+    // Full name per doctor ID as stored (what suggestions show)
+    private final Map<Long, String> displayNames = new HashMap<>();
+    // Trigram -> IDs of the doctors whose normalized name contains it
+    private final Map<String, TreeSet<Long>> postings = new HashMap<>();
+    private volatile boolean built;
+
+    @Autowired
+    public DoctorNameIndex(DoctorRepository doctorRepository) {
+        this.doctorRepository = doctorRepository;
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Search ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Finds the doctors whose full name contains the query (case-insensitive).
+     *
+     * @param query The partial name to search for.
+     * @return The matching doctor IDs in ascending order.
+     */
+    public List<Long> search(String query) {
+        String q = normalize(query);
+        ensureBuilt();
+
+        lock.readLock().lock();
+        try {
+            Collection<Long> candidates = candidatesFor(q);
+            List<Long> matches = new ArrayList<>();
+            for (Long id : candidates) {
+                if (names.get(id).contains(q)) {
+                    matches.add(id);
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Typeahead suggestions: names where a word starts with the query come first, then other substring matches.
+     *
+     * @param query The text typed so far.
+     * @param limit The maximum number of suggestions.
+     * @return Doctor ID to full name as stored (e.g. "John Smith"), in suggestion order.
+     */
+    public Map<Long, String> suggest(String query, int limit) {
+        String q = normalize(query);
+        List<Long> matches = search(q);
+        Map<Long, String> prefixMatches = new LinkedHashMap<>();
+        Map<Long, String> otherMatches = new LinkedHashMap<>();
+
+        lock.readLock().lock();
+        try {
+            for (Long id : matches) {
+                String name = names.get(id);
+                if (name == null) {
+                    continue; // Removed since the search
+                }
+                if (name.startsWith(q) || name.contains(" " + q)) {
+                    prefixMatches.put(id, displayNames.get(id));
+                    if (prefixMatches.size() >= limit) {
+                        break;
+                    }
+                } else if (otherMatches.size() < limit) {
+                    otherMatches.put(id, displayNames.get(id));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (Map.Entry<Long, String> entry : otherMatches.entrySet()) {
+            if (prefixMatches.size() >= limit) {
+                break;
+            }
+            prefixMatches.put(entry.getKey(), entry.getValue());
+        }
+        return prefixMatches;
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Maintenance (called by DoctorService after successful writes) ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Adds or replaces a doctor's entry.
+     */
+    public void put(Doctor doctor) {
+        lock.writeLock().lock();
+        try {
+            // Before the first build the database is the source; the build will pick this doctor up
+            if (built) {
+                removeEntry(doctor.getId());
+                addEntry(doctor.getId(), doctor.getFirstName(), doctor.getLastName());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a doctor's entry.
+     */
+    public void remove(Long doctorId) {
+        lock.writeLock().lock();
+        try {
+            if (built) {
+                removeEntry(doctorId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Discards the index and reloads it from the database.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            names.clear();
+            displayNames.clear();
+            postings.clear();
+            for (Object[] row : doctorRepository.findAllIdsAndNames()) {
+                addEntry((Long) row[0], (String) row[1], (String) row[2]);
+            }
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Private Helpers ---
+    // -------------------------------------------------------------------------
+
+    private void ensureBuilt() {
+        if (!built) {
+            lock.writeLock().lock();
+            try {
+                if (!built) {
+                    rebuild();
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Picks the smallest posting list among the query's trigrams; short queries fall back to all names.
+     */
+    private Collection<Long> candidatesFor(String q) {
+        if (q.length() < GRAM) {
+            return names.keySet();
+        }
+        Collection<Long> smallest = null;
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            TreeSet<Long> ids = postings.get(q.substring(i, i + GRAM));
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            if (smallest == null || ids.size() < smallest.size()) {
+                smallest = ids;
+            }
+        }
+        return smallest;
+    }
+
+    private void addEntry(Long id, String firstName, String lastName) {
+        String displayName = firstName + " " + lastName;
+        String name = normalize(displayName);
+        names.put(id, name);
+        displayNames.put(id, displayName.trim());
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            postings.computeIfAbsent(name.substring(i, i + GRAM), k -> new TreeSet<>()).add(id);
+        }
+    }
+
+    private void removeEntry(Long id) {
+        String name = names.remove(id);
+        displayNames.remove(id);
+        if (name == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            String gram = name.substring(i, i + GRAM);
+            TreeSet<Long> ids = postings.get(gram);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.yourprojectname.dto;
+
+import com.example.yourprojectname.model.Doctor;
+
+/**
+ * Public view of a doctor for the directory, filter and other unauthenticated endpoints.
+ * These responses are cacheable by shared caches, so they must never carry the Doctor
+ * entity itself (password, email, active flag); only what a visitor needs to pick a doctor.
+ */
+public class DoctorPublicDTO {
+
+    // --- Core Fields ---
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final String specialty;
+
+    public DoctorPublicDTO(Long id, String firstName, String lastName, String specialty) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.specialty = specialty;
+    }
+
+    /**
+     * Builds the public view of a doctor entity.
+     */
+    public static DoctorPublicDTO from(Doctor doctor) {
+        return new DoctorPublicDTO(doctor.getId(), doctor.getFirstName(), doctor.getLastName(), doctor.getSpecialty());
+    }
+
+    // --- Getter Methods ---
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getSpecialty() {
+        return specialty;
+    }
+}
@@ -1,17 +1,24 @@
 package com.example.yourprojectname.repository; // Replace with your actual repository package name
 
 import com.example.yourprojectname.model.Doctor; // Assuming your Doctor entity is in this package
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Repository interface for managing Doctor entities.
  * Extends JpaRepository to inherit standard CRUD operations.
  * The entity type is Doctor and the ID type is Long.
+ * Doctors are soft-deleted (active = false) so their appointment history keeps its doctor;
+ * every directory, search and booking query only returns active doctors.
  */
 @Repository
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
@@ -25,37 +32,113 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     Doctor findByEmail(String email);
 
     /**
-     * Finds doctors by partial match on their full name (first name and last name combined).
-     * Uses @Query with LIKE and CONCAT for flexible pattern matching.
-     * Assumes Doctor entity has 'firstName' and 'lastName' fields.
+     * Finds active doctors by specialty, ignoring case.
      *
-     * @param name The partial name string to search for.
-     * @return A list of doctors whose combined name matches the pattern.
+     * @param specialty The specialty to search for.
+     * @return A list of doctors with the matching specialty.
+     */
+    @Query("SELECT d FROM Doctor d WHERE d.active = true AND LOWER(d.specialty) = LOWER(:specialty)")
+    List<Doctor> findBySpecialtyIgnoreCase(@Param("specialty") String specialty);
+
+    /**
+     * Checks whether an active doctor with the given ID exists.
+     *
+     * @param id The ID of the doctor.
+     * @return true if the doctor exists and has not been deleted.
+     */
+    boolean existsByIdAndActiveTrue(Long id);
+
+    /**
+     * Soft-deletes a doctor. The row stays so that appointments keep their doctor (and its
+     * name and specialty) for history and reporting.
+     *
+     * @param id The ID of the doctor.
+     * @return The number of rows updated (0 if the doctor was already inactive).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Doctor d SET d.active = false WHERE d.id = :id AND d.active = true")
+    int deactivateById(@Param("id") Long id);
+
+    /**
+     * Loads the ID, first name and last name of every doctor.
+     * Projection query used to build the in-memory name search index without loading full entities.
+     *
+     * @return A list of [id, firstName, lastName] rows.
+     */
+    @Query("SELECT d.id, d.firstName, d.lastName FROM Doctor d WHERE d.active = true")
+    List<Object[]> findAllIdsAndNames();
+
+    /**
+     * Fetches one keyset page of the doctor directory, ordered by ID.
+     * The AM/PM condition is optional: filterByTime = false disables it. Specialty filters are served by
+     * DoctorCatalogCache and name search by the in-memory DoctorNameIndex (see findDirectoryPageAmong).
+     * The AM/PM condition keeps doctors whose number of distinct booked times in [start, end] is below slotCount.
+     * Pass the last ID of the previous page as afterId (0 for the first page) and the page size via pageable.
+     *
+     * @param afterId Only doctors with a greater ID are returned.
+     * @param filterByTime Whether to apply the free-slot condition.
+     * @param start The start of the half-day range (inclusive).
+     * @param end The end of the half-day range (inclusive).
+     * @param slotCount The number of working slots in the range.
+     * @param pageable The page size (page number must be 0).
+     * @return The next page of matching doctors.
      */
     @Query("SELECT d FROM Doctor d " +
-           "WHERE CONCAT(d.firstName, ' ', d.lastName) LIKE %:name%")
-    List<Doctor> findByNameLike(@Param("name") String name);
+           "WHERE d.id > :afterId AND d.active = true " +
+           "AND (:filterByTime = false OR d.id NOT IN (" +
+           "SELECT a.doctorId FROM Appointment a " +
+           "WHERE a.appointmentTime BETWEEN :start AND :end AND a.status <> 2 " +
+           "GROUP BY a.doctorId " +
+           "HAVING COUNT(DISTINCT a.appointmentTime) >= :slotCount)) " +
+           "ORDER BY d.id")
+    List<Doctor> findDirectoryPage(
+            @Param("afterId") long afterId,
+            @Param("filterByTime") boolean filterByTime,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("slotCount") long slotCount,
+            Pageable pageable);
 
     /**
-     * Filters doctors by partial name match and exact specialty, both case-insensitive.
-     * Uses @Query with LOWER and LIKE for robust case-insensitive partial and exact matching.
+     * The free-slot condition of findDirectoryPage, restricted to a set of candidate IDs (e.g. name search matches).
      *
-     * @param name The partial name string to search for.
-     * @param specialty The specialty to filter by.
-     * @return A list of matching doctors.
+     * @param ids The candidate doctor IDs.
+     * @param start The start of the half-day range (inclusive).
+     * @param end The end of the half-day range (inclusive).
+     * @param slotCount The number of working slots in the range.
+     * @return The matching doctors, ordered by ID.
      */
     @Query("SELECT d FROM Doctor d " +
-           "WHERE LOWER(d.specialty) = LOWER(:specialty) " +
-           "AND LOWER(CONCAT(d.firstName, ' ', d.lastName)) LIKE LOWER(CONCAT('%', :name, '%'))")
-    List<Doctor> findByNameContainingIgnoreCaseAndSpecialtyIgnoreCase(
-            @Param("name") String name,
-            @Param("specialty") String specialty);
+           "WHERE d.id IN :ids AND d.active = true " +
+           "AND d.id NOT IN (" +
+           "SELECT a.doctorId FROM Appointment a " +
+           "WHERE a.appointmentTime BETWEEN :start AND :end AND a.status <> 2 " +
+           "GROUP BY a.doctorId " +
+           "HAVING COUNT(DISTINCT a.appointmentTime) >= :slotCount) " +
+           "ORDER BY d.id")
+    List<Doctor> findDirectoryPageAmong(
+            @Param("ids") Collection<Long> ids,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end,
+            @Param("slotCount") long slotCount);
 
     /**
-     * Finds doctors by specialty, ignoring case, using Spring Data naming convention.
+     * Returns which of the given IDs are active doctors, in one query (used to validate batches).
      *
-     * @param specialty The specialty to search for.
-     * @return A list of doctors with the matching specialty.
+     * @param ids The IDs to check.
+     * @return The subset of IDs that exist and are active.
+     */
+    @Query("SELECT d.id FROM Doctor d WHERE d.id IN :ids AND d.active = true")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Returns only the names of the given IDs, for compact list views that do not need full entities.
+     * Includes deleted doctors, so past appointments still show who they were with.
+     *
+     * @param ids The IDs to look up.
+     * @return A list of [id, firstName, lastName] rows.
      */
-    List<Doctor> findBySpecialtyIgnoreCase(String specialty);
+    @Query("SELECT d.id, d.firstName, d.lastName FROM Doctor d WHERE d.id IN :ids")
+    List<Object[]> findNamesByIds(@Param("ids") Collection<Long> ids);
 }
@@ -1,15 +1,19 @@
 package com.example.yourprojectname.service;
 
+import com.example.yourprojectname.dto.DoctorPublicDTO;
 import com.example.yourprojectname.dto.Login;
-import com.example.yourprojectname.model.Appointment;
 import com.example.yourprojectname.model.Doctor;
 import com.example.yourprojectname.repository.AppointmentRepository;
 import com.example.yourprojectname.repository.DoctorRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.DayOfWeek;
 import java.time.LocalDate;
@@ -24,22 +28,44 @@ public class DoctorService {
     private final DoctorRepository doctorRepository;
     private final AppointmentRepository appointmentRepository;
     private final TokenService tokenService;
-
-    // Dummy data for available slots (replace with actual logic, perhaps from a Doctor entity field)
-    private static final List<LocalTime> ALL_SLOTS = List.of(
-            LocalTime.of(8, 0), LocalTime.of(9, 0), LocalTime.of(10, 0), LocalTime.of(11, 0),
-            LocalTime.of(13, 0), LocalTime.of(14, 0), LocalTime.of(15, 0), LocalTime.of(16, 0)
-    );
+    private final DoctorAvailabilityIndex availabilityIndex;
+    private final DoctorNameIndex nameIndex;
+    private final DoctorCatalogCache catalogCache;
+    private final DirectoryVersions directoryVersions;
+    private final AppointmentReportService reportService;
+
+    // Standard working slots are owned by the availability index
+    private static final List<LocalTime> ALL_SLOTS = DoctorAvailabilityIndex.ALL_SLOTS;
     private static final LocalTime AM_END = LocalTime.of(12, 0);
 
+    // Directory page size used when the client does not ask for one, and the largest allowed
+    @Value("${doctor.directory.page-size:50}")
+    private int defaultPageSize;
+
+    @Value("${doctor.directory.max-page-size:200}")
+    private int maxPageSize;
+
+    // Number of name-index matches (or cached specialty candidates) checked against the other filters per database round-trip
+    private static final int NAME_MATCH_CHUNK_SIZE = 500;
+
     @Autowired
     public DoctorService(
             DoctorRepository doctorRepository,
             AppointmentRepository appointmentRepository,
-            TokenService tokenService) {
+            TokenService tokenService,
+            DoctorAvailabilityIndex availabilityIndex,
+            DoctorNameIndex nameIndex,
+            DoctorCatalogCache catalogCache,
+            DirectoryVersions directoryVersions,
+            AppointmentReportService reportService) {
         this.doctorRepository = doctorRepository;
         this.appointmentRepository = appointmentRepository;
         this.tokenService = tokenService;
+        this.availabilityIndex = availabilityIndex;
+        this.nameIndex = nameIndex;
+        this.catalogCache = catalogCache;
+        this.directoryVersions = directoryVersions;
+        this.reportService = reportService;
     }
 
     // -------------------------------------------------------------------------
@@ -49,25 +75,41 @@ public class DoctorService {
     /**
      * Fetches the available 1-hour slots for a specific doctor on a given date.
      * Assumes ALL_SLOTS represents the doctor's standard working hours.
+     * Served from the per-day slot bitmap in DoctorAvailabilityIndex.
      */
     public List<String> getDoctorAvailability(Long doctorId, LocalDate date) {
-        // 1. Get all booked appointments for the doctor on the specified date
-        LocalDateTime startOfDay = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
-
-        List<Appointment> bookedAppointments = appointmentRepository.findByDoctorIdAndAppointmentTimeBetween(
-                doctorId, startOfDay, endOfDay);
+        return availabilityIndex.getAvailableSlots(doctorId, date);
+    }
 
-        // 2. Extract booked times (assuming appointments are 1 hour long)
-        Set<LocalTime> bookedTimes = bookedAppointments.stream()
-                .map(a -> a.getAppointmentTime().toLocalTime())
-                .collect(Collectors.toSet());
+    /**
+     * Checks whether a doctor exists and has not been deleted (e.g. before reporting availability).
+     */
+    public boolean isActiveDoctor(Long doctorId) {
+        return doctorRepository.existsByIdAndActiveTrue(doctorId);
+    }
 
-        // 3. Filter out booked slots from ALL_SLOTS
-        return ALL_SLOTS.stream()
-                .filter(slot -> !bookedTimes.contains(slot))
-                .map(LocalTime::toString) // Convert LocalTime to String format (e.g., "08:00")
-                .collect(Collectors.toList());
+    /**
+     * Computes booked-slot bitmaps for many doctors across a date range using one appointment query.
+     * If doctorIds is empty, all doctors of the given specialty are used (from the catalog cache).
+     * Unknown and deleted doctor IDs are left out rather than reported as fully free.
+     *
+     * @return For each doctor, one bitmap per day (see DoctorAvailabilityIndex.getAvailableSlots(int)).
+     */
+    public Map<Long, int[]> getDoctorAvailabilityRange(List<Long> doctorIds, String specialty, LocalDate from, LocalDate to) {
+        Collection<Long> ids = doctorIds;
+        if (ids != null && !ids.isEmpty()) {
+            // Keep the requested order, minus the IDs that are not active doctors
+            Set<Long> active = new HashSet<>(doctorRepository.findExistingIds(new HashSet<>(ids)));
+            ids = ids.stream().filter(active::contains).collect(Collectors.toList());
+        } else if (specialty != null) {
+            ids = catalogCache.getBySpecialty(specialty).stream()
+                    .map(Doctor::getId)
+                    .collect(Collectors.toList());
+        }
+        if (ids == null) {
+            ids = Collections.emptyList();
+        }
+        return availabilityIndex.loadBookedMasks(new LinkedHashSet<>(ids), from, to);
     }
 
     // -------------------------------------------------------------------------
@@ -86,7 +128,11 @@ public class DoctorService {
         }
         try {
             // NOTE: In a real app, hash the password here before saving
-            doctorRepository.save(doctor);
+            doctor.setActive(true);
+            Doctor saved = doctorRepository.save(doctor);
+            nameIndex.put(saved);
+            catalogCache.invalidate();
+            directoryVersions.bumpDirectory();
             return 1; // Success
         } catch (Exception e) {
             System.err.println("Error saving doctor: " + e.getMessage());
@@ -100,12 +146,19 @@ public class DoctorService {
      * @return 1 for success, -1 if doctor not found, 0 for internal errors.
      */
     public int updateDoctor(Doctor doctor) {
-        if (!doctorRepository.existsById(doctor.getId())) {
-            return -1; // Doctor not found
+        if (!doctorRepository.existsByIdAndActiveTrue(doctor.getId())) {
+            return -1; // Doctor not found (or deleted)
         }
         try {
             // NOTE: Only update editable fields; password should be handled separately
-            doctorRepository.save(doctor);
+            // A request body without "active" must not soft-delete the doctor
+            doctor.setActive(true);
+            Doctor saved = doctorRepository.save(doctor);
+            nameIndex.put(saved);
+            catalogCache.invalidate();
+            directoryVersions.bumpDirectory();
+            // Moves the doctor's report counters in memory if the specialty changed
+            reportService.doctorSpecialtyChanged(saved.getId(), saved.getSpecialty());
             return 1; // Success
         } catch (Exception e) {
             System.err.println("Error updating doctor: " + e.getMessage());
@@ -114,27 +167,39 @@ public class DoctorService {
     }
 
     /**
-     * Retrieves a list of all doctors.
+     * Returns hit/miss statistics of the specialty catalog cache.
      */
-    public List<Doctor> getDoctors() {
-        return doctorRepository.findAll();
+    public Map<String, Object> getCatalogStats() {
+        return catalogCache.getStats();
     }
 
     /**
-     * Deletes a doctor by ID, ensuring associated appointments are deleted first.
+     * Deletes a doctor by ID after cancelling the doctor's scheduled appointments.
+     * The doctor is soft-deleted (marked inactive), so past appointments keep their doctor.
      *
      * @return 1 for success, -1 if doctor not found, 0 for internal errors.
      */
     @Transactional
     public int deleteDoctor(long id) {
-        if (!doctorRepository.existsById(id)) {
-            return -1; // Doctor not found
+        if (!doctorRepository.existsByIdAndActiveTrue(id)) {
+            return -1; // Doctor not found (or already deleted)
         }
         try {
-            // Delete all associated appointments first to maintain data integrity
-            appointmentRepository.deleteAllByDoctorId(id);
-            // Then delete the doctor
-            doctorRepository.deleteById(id);
+            // Cancel the doctor's scheduled appointments in one UPDATE; history is kept for reporting
+            appointmentRepository.cancelScheduledByDoctorId(id);
+            // Then deactivate the doctor
+            doctorRepository.deactivateById(id);
+            // In-memory state is only touched once the delete is committed: evicting earlier would let a
+            // concurrent request re-cache the still-visible doctor, and a rollback would leave it out of sync
+            afterCommit(() -> {
+                // Tokens issued to this doctor must stop validating immediately
+                tokenService.evictUser("doctor", id);
+                availabilityIndex.evictDoctor(id);
+                nameIndex.remove(id);
+                catalogCache.invalidate();
+                directoryVersions.bumpDirectory();
+                reportService.recordDoctorCancelled(id);
+            });
             return 1; // Success
         } catch (Exception e) {
             System.err.println("Error deleting doctor or associated appointments: " + e.getMessage());
@@ -142,6 +207,22 @@ public class DoctorService {
         }
     }
 
+    /**
+     * Runs the action after the current transaction commits, or right away if there is none.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
     // -------------------------------------------------------------------------
     // --- Authentication ---
     // -------------------------------------------------------------------------
@@ -155,7 +236,7 @@ public class DoctorService {
         // 1. Find the doctor by email (identifier)
         Doctor doctor = doctorRepository.findByEmail(login.getIdentifier());
 
-        if (doctor == null) {
+        if (doctor == null || !doctor.isActive()) {
             response.put("error", "Invalid credentials.");
             return new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
         }
@@ -183,107 +264,163 @@ public class DoctorService {
     // -------------------------------------------------------------------------
 
     /**
-     * Finds doctors by their name (partial match).
+     * Typeahead suggestions for doctor names, served from the in-memory name index.
+     *
+     * @param query The text typed so far.
+     * @param limit The maximum number of suggestions.
+     * @return A map containing the list of suggestions (doctor ID and full name).
      */
-    public Map<String, Object> findDoctorByName(String name) {
-        List<Doctor> doctors = doctorRepository.findByNameLike(name);
-        return Collections.singletonMap("doctors", doctors);
+    public Map<String, Object> suggestDoctorNames(String query, int limit) {
+        List<Map<String, Object>> suggestions = new ArrayList<>();
+        nameIndex.suggest(query, limit).forEach((id, name) -> {
+            Map<String, Object> suggestion = new HashMap<>();
+            suggestion.put("id", id);
+            suggestion.put("name", name);
+            suggestions.add(suggestion);
+        });
+        return Collections.singletonMap("suggestions", suggestions);
     }
 
     /**
-     * Filters doctors by name, specialty, and availability (AM/PM).
+     * Filters the doctor directory by any combination of name, specialty and AM/PM availability,
+     * returning one keyset page ordered by doctor ID. Name matching uses the in-memory name index,
+     * and specialty filters are served from the in-memory catalog cache.
+     *
+     * @param name Partial doctor name, or null.
+     * @param specialty Specialty (case-insensitive), or null.
+     * @param amOrPm "AM" or "PM" to keep doctors with a free slot in that half-day; anything else is ignored.
+     * @param date The date the AM/PM availability applies to (today if null).
+     * @param afterId The nextCursor of the previous page, or null for the first page.
+     * @param pageSize Requested page size, or null for the default.
+     * @return A map with "doctors" (the page, as DoctorPublicDTOs) and "nextCursor" (null on the last page).
      */
-    public Map<String, Object> filterDoctorsByNameSpecilityandTime(String name, String specialty, String amOrPm) {
-        // 1. Filter by Name and Specialty using custom repository query
-        List<Doctor> doctors = doctorRepository.findByNameContainingIgnoreCaseAndSpecialtyIgnoreCase(name, specialty);
-
-        // 2. Filter by Time (AM/PM)
-        List<Doctor> filteredDoctors = filterDoctorByTime(doctors, amOrPm);
-
-        return Collections.singletonMap("doctors", filteredDoctors);
-    }
+    public Map<String, Object> filterDoctors(String name, String specialty, String amOrPm, LocalDate date,
+                                             Long afterId, Integer pageSize) {
+        int size = resolvePageSize(pageSize);
+        long cursor = afterId != null ? afterId : 0L;
+        LocalDate day = date != null ? date : LocalDate.now();
+
+        // Invalid AM/PM criteria leave the result unfiltered by time
+        String timeOfDay = amOrPm != null ? amOrPm.toUpperCase() : "";
+        boolean filterByTime = timeOfDay.equals("AM") || timeOfDay.equals("PM");
+
+        LocalDateTime start = halfDayStart(day, timeOfDay);
+        LocalDateTime end = halfDayEnd(day, timeOfDay);
+        long slotCount = halfDaySlotCount(timeOfDay);
+
+        if (specialty != null) {
+            return filterCachedSpecialty(specialty, name, filterByTime, start, end, slotCount, cursor, size);
+        }
 
-    /**
-     * Filters doctors by name and their availability (AM/PM).
-     */
-    public Map<String, Object> filterDoctorByNameAndTime(String name, String amOrPm) {
-        // 1. Filter by Name (using a custom repository method or finding all and filtering)
-        List<Doctor> doctors = doctorRepository.findByNameLike(name); // Assuming this is case-insensitive
+        if (name == null) {
+            // Fetch one extra row to know whether another page follows
+            List<Doctor> doctors = doctorRepository.findDirectoryPage(
+                    cursor, filterByTime, start, end, slotCount, PageRequest.of(0, size + 1));
+            return createPage(doctors, size);
+        }
 
-        // 2. Filter by Time (AM/PM)
-        List<Doctor> filteredDoctors = filterDoctorByTime(doctors, amOrPm);
+        // Name filter: candidate IDs come from the name index, remaining filters run on chunks of them
+        List<Long> matches = nameIndex.search(name);
+        int from = firstIndexAfter(matches, cursor);
+        List<Doctor> doctors = new ArrayList<>();
+
+        while (from < matches.size() && doctors.size() <= size) {
+            int to = Math.min(from + NAME_MATCH_CHUNK_SIZE, matches.size());
+            List<Long> chunk = matches.subList(from, to);
+            if (!filterByTime) {
+                chunk = chunk.subList(0, Math.min(chunk.size(), size + 1 - doctors.size()));
+                List<Doctor> loaded = new ArrayList<>(doctorRepository.findAllById(chunk));
+                loaded.sort(Comparator.comparing(Doctor::getId));
+                doctors.addAll(loaded);
+                to = from + chunk.size();
+            } else {
+                doctors.addAll(doctorRepository.findDirectoryPageAmong(chunk, start, end, slotCount));
+            }
+            from = to;
+        }
 
-        return Collections.singletonMap("doctors", filteredDoctors);
+        return createPage(doctors.size() > size + 1 ? doctors.subList(0, size + 1) : doctors, size);
     }
 
-    /**
-     * Filters doctors by name and specialty.
-     */
-    public Map<String, Object> filterDoctorByNameAndSpecility(String name, String specialty) {
-        // Directly use the repository method
-        List<Doctor> doctors = doctorRepository.findByNameContainingIgnoreCaseAndSpecialtyIgnoreCase(name, specialty);
-        return Collections.singletonMap("doctors", doctors);
-    }
+    // -------------------------------------------------------------------------
+    // --- Private Helpers ---
+    // -------------------------------------------------------------------------
 
     /**
-     * Filters doctors by specialty and their availability (AM/PM).
+     * Specialty branch of filterDoctors: scans the cached doctors of the specialty after the cursor,
+     * applying the optional name filter (name index) in memory. The AM/PM filter runs one booking
+     * aggregate per chunk of remaining candidates, so only this specialty's doctors are counted.
      */
-    public Map<String, Object> filterDoctorByTimeAndSpecility(String specialty, String amOrPm) {
-        // 1. Filter by Specialty
-        List<Doctor> doctors = doctorRepository.findBySpecialtyIgnoreCase(specialty);
+    private Map<String, Object> filterCachedSpecialty(String specialty, String name, boolean filterByTime,
+                                                      LocalDateTime start, LocalDateTime end, long slotCount,
+                                                      long cursor, int size) {
+        Set<Long> nameMatches = name != null ? new HashSet<>(nameIndex.search(name)) : null;
+        List<Doctor> candidates = new ArrayList<>();
+        for (Doctor doctor : catalogCache.getBySpecialty(specialty)) {
+            if (doctor.getId() > cursor && (nameMatches == null || nameMatches.contains(doctor.getId()))) {
+                candidates.add(doctor);
+            }
+        }
 
-        // 2. Filter by Time (AM/PM)
-        List<Doctor> filteredDoctors = filterDoctorByTime(doctors, amOrPm);
+        List<Doctor> doctors = new ArrayList<>();
+        for (int from = 0; from < candidates.size() && doctors.size() <= size; from += NAME_MATCH_CHUNK_SIZE) {
+            List<Doctor> chunk = candidates.subList(from, Math.min(from + NAME_MATCH_CHUNK_SIZE, candidates.size()));
+            Set<Long> fullyBooked = Collections.emptySet();
+            if (filterByTime) {
+                List<Long> chunkIds = chunk.stream().map(Doctor::getId).collect(Collectors.toList());
+                fullyBooked = new HashSet<>(appointmentRepository.findFullyBookedDoctorIds(chunkIds, start, end, slotCount));
+            }
+            for (Doctor doctor : chunk) {
+                if (!fullyBooked.contains(doctor.getId())) {
+                    doctors.add(doctor);
+                    if (doctors.size() > size) {
+                        break;
+                    }
+                }
+            }
+        }
+        return createPage(doctors, size);
+    }
 
-        return Collections.singletonMap("doctors", filteredDoctors);
+    // Index of the first ID in the ascending list that is greater than the cursor
+    private int firstIndexAfter(List<Long> ids, long cursor) {
+        int index = Collections.binarySearch(ids, cursor);
+        return index >= 0 ? index + 1 : -index - 1;
     }
 
-    /**
-     * Filters doctors only by specialty.
-     */
-    public Map<String, Object> filterDoctorBySpecility(String specialty) {
-        List<Doctor> doctors = doctorRepository.findBySpecialtyIgnoreCase(specialty);
-        return Collections.singletonMap("doctors", doctors);
+    private int resolvePageSize(Integer pageSize) {
+        if (pageSize == null || pageSize <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(pageSize, maxPageSize);
     }
 
     /**
-     * Filters doctors only by their availability (AM/PM).
+     * Builds the page response from a result fetched with one extra row.
+     * The page is public and cacheable, so doctors are exposed only as DoctorPublicDTOs.
      */
-    public Map<String, Object> filterDoctorsByTime(String amOrPm) {
-        List<Doctor> doctors = doctorRepository.findAll();
-        List<Doctor> filteredDoctors = filterDoctorByTime(doctors, amOrPm);
-        return Collections.singletonMap("doctors", filteredDoctors);
+    private Map<String, Object> createPage(List<Doctor> doctors, int size) {
+        boolean hasMore = doctors.size() > size;
+        List<Doctor> page = hasMore ? doctors.subList(0, size) : doctors;
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("doctors", page.stream().map(DoctorPublicDTO::from).collect(Collectors.toList()));
+        response.put("nextCursor", hasMore ? page.get(size - 1).getId() : null);
+        return response;
     }
 
-    // -------------------------------------------------------------------------
-    // --- Private Helper Filter ---
-    // -------------------------------------------------------------------------
-
-    /**
-     * Private helper method to filter a list of doctors based on AM/PM availability.
-     * NOTE: This requires a field on the Doctor entity to store availability (e.g., 'availableTimeStart' and 'availableTimeEnd').
-     * For demonstration, this uses a simplified check against the ALL_SLOTS dummy.
-     */
-    private List<Doctor> filterDoctorByTime(List<Doctor> doctors, String amOrPm) {
-        String timeOfDay = amOrPm.toUpperCase();
+    private LocalDateTime halfDayStart(LocalDate date, String timeOfDay) {
+        return timeOfDay.equals("AM") ? date.atStartOfDay() : date.atTime(AM_END);
+    }
 
-        if (!timeOfDay.equals("AM") && !timeOfDay.equals("PM")) {
-            return doctors; // Return unfiltered if criteria is invalid
-        }
+    private LocalDateTime halfDayEnd(LocalDate date, String timeOfDay) {
+        return timeOfDay.equals("AM") ? date.atTime(AM_END).minusNanos(1) : date.atTime(LocalTime.MAX);
+    }
 
-        return doctors.stream().filter(doctor -> {
-            // Simplistic check: filter based on whether the doctor has any AM or PM slots
-            
-            // NOTE: In a real application, you would check the doctor's actual availability schedule fields
-            // For this implementation, we check if they have any potential slot in that period.
-            boolean hasAmSlot = ALL_SLOTS.stream().anyMatch(t -> t.isBefore(AM_END));
-            boolean hasPmSlot = ALL_SLOTS.stream().anyMatch(t -> t.isAfter(AM_END));
-
-            if (timeOfDay.equals("AM")) {
-                return hasAmSlot;
-            } else { // PM
-                return hasPmSlot;
-            }
-        }).collect(Collectors.toList());
+    // Number of working slots in the half-day; a doctor with this many bookings there is fully booked
+    private long halfDaySlotCount(String timeOfDay) {
+        return ALL_SLOTS.stream()
+                .filter(t -> timeOfDay.equals("AM") == t.isBefore(AM_END))
+                .count();
     }
 }
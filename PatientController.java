@@ -1,13 +1,20 @@
 package com.example.yourprojectname.controller;
 
+import com.example.yourprojectname.config.AuthenticationInterceptor;
 import com.example.yourprojectname.dto.Login;
 import com.example.yourprojectname.model.Patient;
+import com.example.yourprojectname.service.AuthenticatedUser;
 import com.example.yourprojectname.service.PatientService;
 import com.example.yourprojectname.service.Service; // Central validation/coordination service
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Collections;
 import java.util.Map;
@@ -22,11 +29,13 @@ public class PatientController {
 
     private final PatientService patientService;
     private final Service service;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public PatientController(PatientService patientService, Service service) {
+    public PatientController(PatientService patientService, Service service, ObjectMapper objectMapper) {
         this.patientService = patientService;
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     // --- Helper for consistent error response creation ---
@@ -40,20 +49,20 @@ public class PatientController {
 
     /**
      * Fetches the details of the authenticated patient.
-     * Endpoint: GET /patient/{token}
+     * Endpoint: GET /patient
      */
-    @GetMapping("/{token}")
-    public ResponseEntity<Map<String, Object>> getPatientDetails(@PathVariable String token) {
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getPatientDetails(
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Patient only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "patient");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "patient");
         if (validationError != null) {
             return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
         }
 
         // 2. Fetch Patient Details
-        // The service layer handles fetching details using the email/ID extracted from the token.
-        return patientService.getPatientDetails(token);
+        return patientService.getPatientDetails(principal.getUserId());
     }
 
     // -------------------------------------------------------------------------
@@ -105,29 +114,59 @@ public class PatientController {
         return service.validatePatientLogin(login);
     }
 
+    /**
+     * Logs the patient out by revoking the token sent in the Authorization header.
+     * Endpoint: POST /patient/logout
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, String>> patientLogout(HttpServletRequest request) {
+        return service.logout(AuthenticationInterceptor.resolveToken(request));
+    }
+
     // -------------------------------------------------------------------------
     // 4. Get Patient Appointments (All)
     // -------------------------------------------------------------------------
 
     /**
      * Fetches all appointments for the specified patient ID, after token validation.
-     * Endpoint: GET /patient/{id}/{token}
+     * With stream=true the same JSON is written incrementally from a database cursor,
+     * keeping memory flat for long histories.
+     * Endpoint: GET /patient/{id}?stream=true|false
      */
-    @GetMapping("/{id}/{token}")
-    public ResponseEntity<Map<String, Object>> getPatientAppointments(
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getPatientAppointments(
             @PathVariable Long id,
-            @PathVariable String token) {
+            @RequestParam(defaultValue = "false") boolean stream,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Patient only)
-        // Note: The service.validateToken logic should ensure the ID in the path matches the ID in the token
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "patient");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "patient");
         if (validationError != null) {
             return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
         }
 
+        if (stream) {
+            // The streaming path checks ownership here, before the response is committed
+            if (!id.equals(principal.getUserId())) {
+                return createErrorResponse("Unauthorized access to patient appointments.", HttpStatus.UNAUTHORIZED);
+            }
+            StreamingResponseBody body = out -> {
+                try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                    json.writeStartObject();
+                    json.writeArrayFieldStart("appointments");
+                    patientService.writePatientAppointments(id, json);
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+            };
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body);
+        }
+
         // 2. Fetch Appointments
-        // patientService.getPatientAppointment will perform the secondary ID match check.
-        return patientService.getPatientAppointment(id, token);
+        // patientService.getPatientAppointment checks the requested ID against the authenticated patient.
+        return patientService.getPatientAppointment(id, principal.getUserId());
     }
 
     // -------------------------------------------------------------------------
@@ -136,21 +175,21 @@ public class PatientController {
 
     /**
      * Filters patient appointments by condition ("past", "future") and doctor name.
-     * Endpoint: GET /patient/filter/{condition}/{name}/{token}
+     * Endpoint: GET /patient/filter/{condition}/{name}
      *
      * @param condition The condition to filter appointments by (e.g., "past", "future").
      * @param name The doctor's name to filter appointments by (use "all" or "none" if not filtering by name).
-     * @param token The authentication token.
+     * @param principal The authenticated patient (resolved once from the Authorization header).
      * @return Filtered list of patient appointments or an error message.
      */
-    @GetMapping("/filter/{condition}/{name}/{token}")
+    @GetMapping("/filter/{condition}/{name}")
     public ResponseEntity<Map<String, Object>> filterPatientAppointments(
             @PathVariable String condition,
             @PathVariable String name,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Patient only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "patient");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "patient");
         if (validationError != null) {
             return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
         }
@@ -160,6 +199,6 @@ public class PatientController {
         String filterName = name.equalsIgnoreCase("all") || name.equalsIgnoreCase("none") ? null : name;
 
         // 3. Filter Appointments (Central service handles combining filters)
-        return service.filterPatient(filterCondition, filterName, token);
+        return service.filterPatient(filterCondition, filterName, principal.getUserId());
     }
 }
@@ -2,8 +2,13 @@ package com.example.yourprojectname.repository; // Replace with your actual repo
 
 import com.example.yourprojectname.model.Patient; // Assuming your Patient entity is in this package
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Repository interface for managing Patient entities.
  * Extends JpaRepository to inherit standard CRUD operations.
@@ -30,4 +35,22 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
      * @return The Patient entity matching either the email or the phone number, or null if not found.
      */
     Patient findByEmailOrPhone(String email, String phone);
+
+    /**
+     * Returns which of the given IDs exist, in one query (used to validate batches).
+     *
+     * @param ids The IDs to check.
+     * @return The subset of IDs that exist.
+     */
+    @Query("SELECT p.id FROM Patient p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Returns only the names of the given IDs, for compact list views that do not need full entities.
+     *
+     * @param ids The IDs to look up.
+     * @return A list of [id, name] rows.
+     */
+    @Query("SELECT p.id, p.name FROM Patient p WHERE p.id IN :ids")
+    List<Object[]> findNamesByIds(@Param("ids") Collection<Long> ids);
 }
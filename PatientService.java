@@ -2,75 +2,46 @@ package com.example.yourprojectname.service;
 
 import com.example.yourprojectname.dto.AppointmentDTO;
 import com.example.yourprojectname.model.Appointment;
-import com.example.yourprojectname.model.Doctor;
 import com.example.yourprojectname.model.Patient;
 import com.example.yourprojectname.repository.AppointmentRepository;
-import com.example.yourprojectname.repository.DoctorRepository;
 import com.example.yourprojectname.repository.PatientRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class PatientService {
 
     private final PatientRepository patientRepository;
     private final AppointmentRepository appointmentRepository;
-    private final DoctorRepository doctorRepository;
-    private final TokenService tokenService;
+    private final AppointmentDtoAssembler appointmentDtoAssembler;
 
     @Autowired
     public PatientService(
             PatientRepository patientRepository,
             AppointmentRepository appointmentRepository,
-            DoctorRepository doctorRepository,
-            TokenService tokenService) {
+            AppointmentDtoAssembler appointmentDtoAssembler) {
         this.patientRepository = patientRepository;
         this.appointmentRepository = appointmentRepository;
-        this.doctorRepository = doctorRepository;
-        this.tokenService = tokenService;
+        this.appointmentDtoAssembler = appointmentDtoAssembler;
     }
 
     // -------------------------------------------------------------------------
     // --- Private Helper Methods ---
     // -------------------------------------------------------------------------
 
-    /**
-     * Helper method to convert an Appointment entity to an AppointmentDTO.
-     */
-    private AppointmentDTO convertToDto(Appointment appointment) {
-        // Fetch patient and doctor details required for the DTO
-        Patient patient = patientRepository.findById(appointment.getPatientId()).orElse(new Patient());
-        Doctor doctor = doctorRepository.findById(appointment.getDoctorId()).orElse(new Doctor());
-        
-        String patientFullName = patient.getName() != null ? patient.getName() : "Unknown Patient";
-        String doctorFullName = doctor.getFirstName() != null ? doctor.getFirstName() + " " + doctor.getLastName() : "Unknown Doctor";
-
-        return new AppointmentDTO(
-            appointment.getId(),
-            appointment.getDoctorId(),
-            doctorFullName,
-            appointment.getPatientId(),
-            patientFullName,
-            patient.getEmail(),
-            patient.getPhone(),
-            patient.getAddress(),
-            appointment.getAppointmentTime(),
-            appointment.getStatus()
-        );
-    }
-
     private ResponseEntity<Map<String, Object>> createResponse(List<Appointment> appointments) {
-        List<AppointmentDTO> dtoList = appointments.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
+        List<AppointmentDTO> dtoList = appointmentDtoAssembler.toDtos(appointments);
 
         Map<String, Object> response = Collections.singletonMap("appointments", dtoList);
         return new ResponseEntity<>(response, HttpStatus.OK);
@@ -104,19 +75,13 @@ public class PatientService {
     /**
      * 2. Retrieves a list of appointments for a specific patient, ensuring authorization.
      * @param id The patient's ID.
-     * @param token The JWT token containing the authenticated user ID.
+     * @param authenticatedId The ID of the authenticated patient.
      * @return A response containing a list of AppointmentDTOs or an error.
      */
-    public ResponseEntity<Map<String, Object>> getPatientAppointment(Long id, String token) {
-        // 1. Authorization: Verify ID from token matches requested ID
-        try {
-            Long authenticatedId = tokenService.extractUserId(token); // Assuming this extracts the patient ID
-            
-            if (authenticatedId == null || !authenticatedId.equals(id)) {
-                return createErrorResponse("Unauthorized access to patient appointments.", HttpStatus.UNAUTHORIZED);
-            }
-        } catch (Exception e) {
-            return createErrorResponse("Invalid or expired token.", HttpStatus.UNAUTHORIZED);
+    public ResponseEntity<Map<String, Object>> getPatientAppointment(Long id, Long authenticatedId) {
+        // 1. Authorization: Verify the authenticated patient matches the requested ID
+        if (!id.equals(authenticatedId)) {
+            return createErrorResponse("Unauthorized access to patient appointments.", HttpStatus.UNAUTHORIZED);
         }
 
         // 2. Retrieve all appointments for the patient
@@ -126,6 +91,20 @@ public class PatientService {
         return createResponse(appointments);
     }
 
+    /**
+     * 2b. Streaming variant of getPatientAppointment: writes every appointment of the patient
+     * to the generator straight from a database cursor, without building the full list.
+     * The caller must have checked that the authenticated patient owns this ID.
+     * @param id The patient's ID.
+     * @param json The generator to write the AppointmentDTO objects to (inside an open array).
+     */
+    @Transactional(readOnly = true)
+    public void writePatientAppointments(Long id, JsonGenerator json) throws IOException {
+        try (Stream<Appointment> appointments = appointmentRepository.streamByPatientId(id)) {
+            appointmentDtoAssembler.writeJson(appointments, json, false);
+        }
+    }
+
     /**
      * 3. Filters appointments by condition (past or future) for a specific patient.
      * @param condition The condition to filter by ("past" or "future").
@@ -189,31 +168,19 @@ public class PatientService {
     }
 
     /**
-     * 6. Fetches the patient's details based on the provided JWT token (email).
-     * @param token The JWT token containing the patient's email.
+     * 6. Fetches the details of the authenticated patient.
+     * @param patientId The ID of the authenticated patient.
      * @return The patient's details or an error message.
      */
-    public ResponseEntity<Map<String, Object>> getPatientDetails(String token) {
-        String email;
-        try {
-            // 1. Extract email from token
-            email = tokenService.extractUserEmail(token); // Assuming this extracts the patient email
-        } catch (Exception e) {
-            return createErrorResponse("Invalid or expired token.", HttpStatus.UNAUTHORIZED);
-        }
-
-        if (email == null) {
-            return createErrorResponse("Token does not contain user email.", HttpStatus.UNAUTHORIZED);
-        }
-
-        // 2. Retrieve patient by email
-        Patient patient = patientRepository.findByEmail(email);
+    public ResponseEntity<Map<String, Object>> getPatientDetails(Long patientId) {
+        // 1. Retrieve patient by ID
+        Patient patient = patientRepository.findById(patientId).orElse(null);
 
         if (patient == null) {
             return createErrorResponse("Patient not found.", HttpStatus.NOT_FOUND);
         }
 
-        // 3. Return patient details
+        // 2. Return patient details
         Map<String, Object> response = new HashMap<>();
         response.put("patient", patient);
         return new ResponseEntity<>(response, HttpStatus.OK);
@@ -0,0 +1,118 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.model.Prescription;
+import com.example.yourprojectname.repository.PrescriptionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through cache of prescriptions keyed by appointment ID.
+ * Doctors tend to flip back and forth between the same few visits, so each appointment's
+ * prescriptions are loaded from Mongo on first request and kept until PrescriptionService
+ * saves a prescription for that appointment, or for at most prescription.cache.ttl-seconds.
+ * Invalidation only reaches this instance, so the TTL bounds how long another instance
+ * (or a direct write to Mongo) can leave a stale list here. Hit and miss counts are exposed through getStats().
+ */
+@Component
+public class PrescriptionCache {
+
+    private final PrescriptionRepository prescriptionRepository;
+
+    // Once this many appointments are cached the whole cache is dropped and refilled on demand
+    @Value("${prescription.cache.max-entries:10000}")
+    private int maxEntries;
+
+    // How long a loaded list is served before it is read from Mongo again
+    @Value("${prescription.cache.ttl-seconds:30}")
+    private long ttlSeconds;
+
+    // Appointment ID -> prescriptions of that appointment and when they expire
+    private final Map<Long, CachedPrescriptions> prescriptionsByAppointment = new ConcurrentHashMap<>();
+    // Bumped on every invalidation so loads that started before it are not cached
+    private long generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    // An appointment's prescriptions (unmodifiable) and the time they stop being served, in epoch millis
+    private record CachedPrescriptions(List<Prescription> prescriptions, long cachedUntil) {
+    }
+
+    @Autowired
+    public PrescriptionCache(PrescriptionRepository prescriptionRepository) {
+        this.prescriptionRepository = prescriptionRepository;
+    }
+
+    /**
+     * Returns the prescriptions of an appointment.
+     *
+     * @param appointmentId The appointment ID.
+     * @return An unmodifiable list of prescriptions; empty if there are none.
+     */
+    public List<Prescription> getByAppointmentId(Long appointmentId) {
+        long now = System.currentTimeMillis();
+        CachedPrescriptions cached = prescriptionsByAppointment.get(appointmentId);
+        if (cached != null && cached.cachedUntil() > now) {
+            hits.increment();
+            return cached.prescriptions();
+        }
+
+        misses.increment();
+        long loadGeneration = currentGeneration();
+        List<Prescription> prescriptions =
+                Collections.unmodifiableList(prescriptionRepository.findByAppointmentId(appointmentId));
+
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                if (prescriptionsByAppointment.size() >= maxEntries) {
+                    prescriptionsByAppointment.clear();
+                }
+                // Replaces an expired entry as well; a concurrent fresh load is just as current
+                prescriptionsByAppointment.put(appointmentId,
+                        new CachedPrescriptions(prescriptions, now + ttlSeconds * 1000));
+            }
+        }
+        return prescriptions;
+    }
+
+    /**
+     * Drops the cached prescriptions of one appointment. Called after a prescription is saved for it.
+     *
+     * @param appointmentId The appointment ID.
+     */
+    public synchronized void invalidate(Long appointmentId) {
+        generation++;
+        prescriptionsByAppointment.remove(appointmentId);
+        invalidations.increment();
+    }
+
+    /**
+     * Returns hit/miss counters for monitoring.
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("invalidations", invalidations.sum());
+        stats.put("cachedAppointments", prescriptionsByAppointment.size());
+        return stats;
+    }
+
+    private synchronized long currentGeneration() {
+        return generation;
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.yourprojectname.controller;
 
 import com.example.yourprojectname.model.Prescription;
+import com.example.yourprojectname.service.AuthenticatedUser;
 import com.example.yourprojectname.service.PrescriptionService;
 import com.example.yourprojectname.service.Service; // Central validation/coordination service
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
@@ -18,11 +23,13 @@ public class PrescriptionController {
 
     private final PrescriptionService prescriptionService;
     private final Service service;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public PrescriptionController(PrescriptionService prescriptionService, Service service) {
+    public PrescriptionController(PrescriptionService prescriptionService, Service service, ObjectMapper objectMapper) {
         this.prescriptionService = prescriptionService;
         this.service = service;
+        this.objectMapper = objectMapper;
     }
 
     // -------------------------------------------------------------------------
@@ -31,19 +38,19 @@ public class PrescriptionController {
 
     /**
      * Saves a new prescription after validating the doctor's token.
-     * Endpoint: POST /api/v1/prescription/{token}
+     * Endpoint: POST /api/v1/prescription
      *
-     * @param token The doctor's authentication token.
+     * @param principal The authenticated doctor (resolved once from the Authorization header).
      * @param prescription The prescription object to be saved.
      * @return Success or error message.
      */
-    @PostMapping("/{token}")
+    @PostMapping
     public ResponseEntity<Map<String, String>> savePrescription(
-            @PathVariable String token,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal,
             @RequestBody Prescription prescription) {
 
         // 1. Validate Token (Doctor only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "doctor");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "doctor");
         if (validationError != null) {
             return validationError;
         }
@@ -58,19 +65,19 @@ public class PrescriptionController {
 
     /**
      * Retrieves prescriptions associated with a specific appointment ID.
-     * Endpoint: GET /api/v1/prescription/{appointmentId}/{token}
+     * Endpoint: GET /api/v1/prescription/{appointmentId}
      *
      * @param appointmentId The ID of the appointment.
-     * @param token The doctor's authentication token.
+     * @param principal The authenticated doctor (resolved once from the Authorization header).
      * @return Prescription details or an error message.
      */
-    @GetMapping("/{appointmentId}/{token}")
+    @GetMapping("/{appointmentId}")
     public ResponseEntity<Map<String, Object>> getPrescription(
             @PathVariable Long appointmentId,
-            @PathVariable String token) {
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
 
         // 1. Validate Token (Doctor only)
-        ResponseEntity<Map<String, String>> validationError = service.validateToken(token, "doctor");
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "doctor");
         if (validationError != null) {
             return new ResponseEntity(validationError.getBody(), validationError.getStatusCode());
         }
@@ -79,4 +86,43 @@ public class PrescriptionController {
         // The service layer handles the retrieval logic and potential "not found" scenarios.
         return prescriptionService.getPrescription(appointmentId);
     }
+
+    // -------------------------------------------------------------------------
+    // 3. Get a Patient's Prescription History (Doctor Access)
+    // -------------------------------------------------------------------------
+
+    /**
+     * Retrieves the prescriptions of all of a patient's appointments in one call.
+     * The JSON is written incrementally from a Mongo cursor instead of being built in memory first.
+     * Endpoint: GET /api/v1/prescription/patient/{patientId}
+     *
+     * @param patientId The ID of the patient.
+     * @param principal The authenticated doctor (resolved once from the Authorization header).
+     * @return {"prescriptions": [...]} or an error message.
+     */
+    @GetMapping("/patient/{patientId}")
+    public ResponseEntity<?> getPatientPrescriptions(
+            @PathVariable Long patientId,
+            @RequestAttribute(name = AuthenticatedUser.REQUEST_ATTRIBUTE, required = false) AuthenticatedUser principal) {
+
+        // 1. Validate Token (Doctor only)
+        ResponseEntity<Map<String, String>> validationError = service.authorize(principal, "doctor");
+        if (validationError != null) {
+            return validationError;
+        }
+
+        // 2. Stream Prescriptions
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("prescriptions");
+                prescriptionService.writePatientPrescriptions(patientId, json);
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
 }
@@ -1,38 +1,92 @@
 package com.example.yourprojectname.service;
 
 import com.example.yourprojectname.model.Prescription;
+import com.example.yourprojectname.repository.AppointmentRepository;
 import com.example.yourprojectname.repository.PrescriptionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @Service
 public class PrescriptionService {
 
+    // Documents fetched per cursor batch, and written between flushes, when streaming a patient's history
+    private static final int HISTORY_BATCH_SIZE = 500;
+
     private final PrescriptionRepository prescriptionRepository;
+    private final PrescriptionCache prescriptionCache;
+    private final MongoTemplate mongoTemplate;
+    private final AppointmentRepository appointmentRepository;
+    private final PrescriptionWriteBehind writeBehind;
 
     @Autowired
-    public PrescriptionService(PrescriptionRepository prescriptionRepository) {
+    public PrescriptionService(
+            PrescriptionRepository prescriptionRepository,
+            PrescriptionCache prescriptionCache,
+            MongoTemplate mongoTemplate,
+            AppointmentRepository appointmentRepository,
+            PrescriptionWriteBehind writeBehind) {
         this.prescriptionRepository = prescriptionRepository;
+        this.prescriptionCache = prescriptionCache;
+        this.mongoTemplate = mongoTemplate;
+        this.appointmentRepository = appointmentRepository;
+        this.writeBehind = writeBehind;
+    }
+
+    /**
+     * Makes sure lookups by appointment ID are served by an index rather than a collection scan.
+     * Creating an index that already exists is a no-op, so this is safe on every startup.
+     */
+    @PostConstruct
+    void ensureIndexes() {
+        try {
+            mongoTemplate.indexOps(Prescription.class)
+                    .ensureIndex(new Index().on("appointmentId", Sort.Direction.ASC).named("idx_appointment_id"));
+        } catch (Exception e) {
+            System.err.println("Could not create prescription indexes: " + e.getMessage());
+        }
     }
 
     // -------------------------------------------------------------------------
 
     /**
      * 1. Saves a prescription to the MongoDB database.
+     * In write-behind mode the prescription is journaled and queued instead, and the request
+     * returns 202 without waiting for Mongo; it falls back to a direct save when the queue is full.
      *
      * @param prescription The prescription object to be saved.
-     * @return A response message indicating the result of the save operation (201 or 500).
+     * @return A response message indicating the result of the save operation (201, 202 or 500).
      */
     public ResponseEntity<Map<String, String>> savePrescription(Prescription prescription) {
         try {
+            if (writeBehind.isEnabled() && writeBehind.enqueue(prescription)) {
+                return new ResponseEntity<>(
+                        Collections.singletonMap("message", "Prescription accepted and will be saved shortly."),
+                        HttpStatus.ACCEPTED);
+            }
+
             // Attempt to save the prescription
             prescriptionRepository.save(prescription);
+
+            // Drop the cached list of that appointment so the next read sees the new prescription
+            if (prescription.getAppointmentId() != null) {
+                prescriptionCache.invalidate(prescription.getAppointmentId());
+            }
             
             // Return 201 Created status on success
             return new ResponseEntity<>(
@@ -51,14 +105,15 @@ public class PrescriptionService {
 
     /**
      * 2. Retrieves the prescriptions associated with a specific appointment ID.
+     * Served from PrescriptionCache; only the first read of an appointment goes to Mongo.
      *
      * @param appointmentId The appointment ID whose associated prescriptions are to be retrieved.
      * @return A response containing the list of prescriptions or an error message (200 or 500).
      */
     public ResponseEntity<Map<String, Object>> getPrescription(Long appointmentId) {
         try {
-            // Fetch the prescriptions by appointment ID
-            List<Prescription> prescriptions = prescriptionRepository.findByAppointmentId(appointmentId);
+            // Fetch the prescriptions by appointment ID (read-through cache)
+            List<Prescription> prescriptions = prescriptionCache.getByAppointmentId(appointmentId);
 
             // Return 200 OK status with the results (may be empty list if none found)
             Map<String, Object> response = Collections.singletonMap("prescriptions", prescriptions);
@@ -72,4 +127,56 @@ public class PrescriptionService {
                     HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+
+    // -------------------------------------------------------------------------
+
+    /**
+     * 3. Writes all prescriptions of a patient's appointments as JSON objects.
+     * The patient's appointment IDs are loaded with one ID-only query, and their prescriptions with
+     * a single $in query whose cursor is consumed in batches. Only the fields the history view
+     * renders are projected, so the rest of each document never leaves Mongo.
+     *
+     * @param patientId The ID of the patient.
+     * @param json The generator to write to; the caller writes the enclosing array.
+     * @return The number of prescriptions written.
+     */
+    public long writePatientPrescriptions(Long patientId, JsonGenerator json) throws IOException {
+        List<Long> appointmentIds = appointmentRepository.findIdsByPatientId(patientId);
+        if (appointmentIds.isEmpty()) {
+            return 0;
+        }
+
+        Query query = new Query(Criteria.where("appointmentId").in(appointmentIds))
+                .with(Sort.by(Sort.Direction.ASC, "appointmentId"))
+                .cursorBatchSize(HISTORY_BATCH_SIZE);
+        query.fields().include("appointmentId", "patientName", "medication", "dosage", "doctorNotes");
+
+        long written = 0;
+        try (Stream<Prescription> prescriptions = mongoTemplate.stream(query, Prescription.class)) {
+            Iterator<Prescription> iterator = prescriptions.iterator();
+            while (iterator.hasNext()) {
+                json.writeObject(iterator.next());
+                if (++written % HISTORY_BATCH_SIZE == 0) {
+                    json.flush();
+                }
+            }
+        }
+        return written;
+    }
+
+    // -------------------------------------------------------------------------
+
+    /**
+     * Returns hit/miss statistics of the prescription cache.
+     */
+    public Map<String, Object> getCacheStats() {
+        return prescriptionCache.getStats();
+    }
+
+    /**
+     * Returns queue depth and flush latency statistics of the write-behind queue.
+     */
+    public Map<String, Object> getWriteBehindStats() {
+        return writeBehind.getStats();
+    }
 }
@@ -0,0 +1,440 @@
+package com.example.yourprojectname.service;
+
+import com.example.yourprojectname.model.Prescription;
+import com.example.yourprojectname.repository.PrescriptionRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Optional write-behind queue for prescriptions (prescription.write-behind.enabled).
+ * savePrescription hands the prescription to enqueue(), which appends it to a local journal
+ * file and returns; a single background thread drains the queue and writes to Mongo in
+ * insertAll batches. The journal is truncated whenever the queue runs empty and replayed on
+ * startup, so prescriptions accepted before a crash are still written.
+ * Each prescription gets its ID when it is enqueued, which makes replay an idempotent upsert.
+ * With fsync on, appends happen under the monitor but the force to disk does not: requests that
+ * appended while one force was running share the next one (group commit), so a burst of saves
+ * costs a few fsyncs rather than one each.
+ * When the queue is full, enqueue() returns false and the caller saves synchronously.
+ * A batch that keeps failing for a non-transient reason is split in halves until the failing
+ * prescription is on its own; that one is moved to a dead-letter file so the rest keep flowing.
+ */
+@Component
+public class PrescriptionWriteBehind {
+
+    // Pause before retrying a batch that failed to write
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    // Non-transient failures of one batch before it is split (or, if it holds one prescription, dead-lettered)
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final PrescriptionRepository prescriptionRepository;
+    private final PrescriptionCache prescriptionCache;
+    private final ObjectMapper objectMapper;
+
+    @Value("${prescription.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${prescription.write-behind.capacity:10000}")
+    private int capacity;
+
+    @Value("${prescription.write-behind.batch-size:100}")
+    private int batchSize;
+
+    // Longest a prescription waits in the queue when traffic is too low to fill a batch
+    @Value("${prescription.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMillis;
+
+    // Append-only file of pending prescriptions, one JSON document per line
+    @Value("${prescription.write-behind.journal:prescription-journal.log}")
+    private String journalFile;
+
+    // Whether each journal append is forced to disk before the request returns
+    @Value("${prescription.write-behind.fsync:true}")
+    private boolean fsync;
+
+    // Prescriptions that could not be written after splitting, one JSON document per line
+    @Value("${prescription.write-behind.dead-letter:prescription-dead-letter.log}")
+    private String deadLetterFile;
+
+    private BlockingQueue<Prescription> queue;
+    private FileChannel journal;
+    private Thread flusher;
+    private volatile boolean running;
+
+    // Journal lines written since the journal last matched the queue exactly
+    private long journalLinesSinceCompaction;
+
+    // Lines appended since startup (guarded by this) and how many of those are known to be on disk
+    private long journalLinesAppended;
+    private final AtomicLong journalLinesSynced = new AtomicLong();
+    // Held by the one request currently forcing the journal; the others wait for its result
+    private final Object syncLock = new Object();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder failedFlushes = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+
+    @Autowired
+    public PrescriptionWriteBehind(
+            PrescriptionRepository prescriptionRepository,
+            PrescriptionCache prescriptionCache,
+            ObjectMapper objectMapper) {
+        this.prescriptionRepository = prescriptionRepository;
+        this.prescriptionCache = prescriptionCache;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        // 1. Replay whatever a previous run accepted but did not write
+        replayJournal();
+
+        // 2. Start with an empty journal and the flusher thread
+        journal = FileChannel.open(Paths.get(journalFile),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        running = true;
+        flusher = new Thread(this::runFlusher, "prescription-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        // The flusher writes everything still queued before it exits
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        synchronized (this) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Returns whether write-behind mode is switched on.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Journals a prescription and queues it for writing.
+     *
+     * @param prescription The prescription to save; its ID is assigned here if missing.
+     * @return true if the prescription was accepted, false if the queue is full or the journal
+     *         could not be written (the caller should then save synchronously).
+     */
+    public boolean enqueue(Prescription prescription) {
+        if (prescription.getId() == null) {
+            prescription.setId(new ObjectId().toHexString());
+        }
+        long lineNumber;
+        synchronized (this) {
+            if (queue.remainingCapacity() == 0) {
+                rejected.increment();
+                return false;
+            }
+            try {
+                byte[] line = (objectMapper.writeValueAsString(prescription) + "\n").getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.wrap(line);
+                while (buffer.hasRemaining()) {
+                    journal.write(buffer);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not journal prescription, saving synchronously: " + e.getMessage());
+                rejected.increment();
+                return false;
+            }
+            // Only this method adds to the queue and it holds the monitor, so capacity was checked above
+            queue.add(prescription);
+            journalLinesSinceCompaction++;
+            lineNumber = ++journalLinesAppended;
+            enqueued.increment();
+        }
+
+        if (fsync) {
+            try {
+                syncJournal(lineNumber);
+            } catch (IOException e) {
+                // Already queued under its ID; the synchronous save and the flusher's retry both upsert
+                System.err.println("Could not sync prescription journal, saving synchronously: " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns queue depth, throughput and flush latency figures for monitoring.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        if (!enabled) {
+            return stats;
+        }
+        long flushCount = flushes.sum();
+        stats.put("queueDepth", queue.size());
+        stats.put("capacity", capacity);
+        stats.put("enqueued", enqueued.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("flushed", flushed.sum());
+        stats.put("flushes", flushCount);
+        stats.put("failedFlushes", failedFlushes.sum());
+        stats.put("deadLettered", deadLettered.sum());
+        stats.put("lastFlushMillis", lastFlushNanos / 1_000_000.0);
+        stats.put("avgFlushMillis", flushCount == 0 ? 0.0 : flushNanos.sum() / 1_000_000.0 / flushCount);
+        stats.put("maxFlushMillis", maxFlushNanos.get() / 1_000_000.0);
+        return stats;
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Flusher and Journal Helpers ---
+    // -------------------------------------------------------------------------
+
+    private void runFlusher() {
+        // Batches taken from the queue but not written yet; a failing batch is replaced by its halves
+        Deque<List<Prescription>> pending = new ArrayDeque<>();
+        boolean retrying = false;
+        int attempts = 0;
+        while (running || !queue.isEmpty() || !pending.isEmpty()) {
+            try {
+                // 1. Wait for the first item, then take whatever else is already queued
+                if (pending.isEmpty()) {
+                    Prescription first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    List<Prescription> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    pending.add(batch);
+                }
+
+                // 2. Write the next batch; on failure keep it and retry, so nothing is dropped
+                writeBatch(pending.peekFirst(), retrying);
+                pending.removeFirst();
+                attempts = 0;
+
+                // 3. Once nothing is in flight, everything journaled is in Mongo, dead-lettered or still queued
+                if (pending.isEmpty()) {
+                    retrying = false;
+                    compactJournal();
+                }
+            } catch (InterruptedException e) {
+                // stop() interrupts to end the wait early; the loop condition decides whether to exit
+            } catch (Exception e) {
+                failedFlushes.increment();
+                List<Prescription> batch = pending.peekFirst();
+                if (batch == null) {
+                    // Only compaction failed; the next successful flush tries again
+                    System.err.println("Error compacting prescription journal: " + e.getMessage());
+                    continue;
+                }
+                retrying = true;
+
+                // 4. A write that keeps failing while Mongo is reachable will not succeed by waiting
+                if (!isTransient(e) && ++attempts >= MAX_ATTEMPTS) {
+                    attempts = 0;
+                    pending.removeFirst();
+                    if (batch.size() > 1) {
+                        int half = batch.size() / 2;
+                        pending.addFirst(new ArrayList<>(batch.subList(half, batch.size())));
+                        pending.addFirst(new ArrayList<>(batch.subList(0, half)));
+                    } else {
+                        deadLetter(batch.get(0), e);
+                    }
+                    continue;
+                }
+
+                System.err.println("Error flushing " + batch.size() + " prescriptions, will retry: " + e.getMessage());
+                if (!running) {
+                    // Leave the remainder in the journal for the next startup
+                    return;
+                }
+                try {
+                    Thread.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException ignored) {
+                    // Retry immediately
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether a write failure is likely to go away by itself (e.g. Mongo unreachable),
+     * in which case the batch is retried indefinitely instead of being split.
+     */
+    private static boolean isTransient(Exception e) {
+        return e instanceof TransientDataAccessException || e instanceof DataAccessResourceFailureException;
+    }
+
+    /**
+     * Appends a prescription that could not be written on its own to the dead-letter file.
+     */
+    private void deadLetter(Prescription prescription, Exception cause) {
+        deadLettered.increment();
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(prescription);
+        } catch (IOException e) {
+            json = String.valueOf(prescription);
+        }
+        System.err.println("Dead-lettering prescription " + prescription.getId() + ": " + cause.getMessage());
+        try {
+            Files.write(Paths.get(deadLetterFile), (json + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // Keep the document in the log so it is not lost entirely
+            System.err.println("Could not write dead-letter file, prescription was: " + json);
+        }
+    }
+
+    private void writeBatch(List<Prescription> batch, boolean retrying) {
+        long start = System.nanoTime();
+        if (retrying) {
+            // Part of a failed batch may already be in Mongo; upsert by ID instead of inserting
+            prescriptionRepository.saveAll(batch);
+        } else {
+            prescriptionRepository.insert(batch);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        flushes.increment();
+        flushed.add(batch.size());
+        flushNanos.add(elapsed);
+        lastFlushNanos = elapsed;
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+
+        for (Prescription prescription : batch) {
+            if (prescription.getAppointmentId() != null) {
+                prescriptionCache.invalidate(prescription.getAppointmentId());
+            }
+        }
+    }
+
+    /**
+     * Returns once the given journal line is on disk. One caller at a time forces the journal,
+     * covering every line appended before it started, so the callers waiting behind it usually
+     * find their line already synced.
+     */
+    private void syncJournal(long lineNumber) throws IOException {
+        synchronized (syncLock) {
+            while (journalLinesSynced.get() < lineNumber) {
+                long appended;
+                FileChannel channel;
+                synchronized (this) {
+                    appended = journalLinesAppended;
+                    channel = journal;
+                }
+                try {
+                    channel.force(false);
+                    journalLinesSynced.accumulateAndGet(appended, Math::max);
+                } catch (ClosedChannelException e) {
+                    // compactJournal swapped the file and synced the rewrite; check again unless shutting down
+                    if (!running) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the journal hold exactly the queued prescriptions again: truncates it when the queue is
+     * empty, or rewrites it from the queue once it has grown well past the queue's capacity.
+     */
+    private synchronized void compactJournal() throws IOException {
+        if (queue.isEmpty()) {
+            journal.truncate(0);
+            journalLinesSinceCompaction = 0;
+            // Every line appended so far is in Mongo, so nobody needs to wait for it to reach disk
+            journalLinesSynced.accumulateAndGet(journalLinesAppended, Math::max);
+        } else if (journalLinesSinceCompaction > 2L * capacity) {
+            List<String> lines = new ArrayList<>(queue.size());
+            for (Prescription prescription : queue) {
+                lines.add(objectMapper.writeValueAsString(prescription));
+            }
+            Path path = Paths.get(journalFile);
+            Path tmp = Paths.get(journalFile + ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            journal.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            journal = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            journalLinesSinceCompaction = lines.size();
+            if (fsync) {
+                journal.force(false);
+            }
+            journalLinesSynced.accumulateAndGet(journalLinesAppended, Math::max);
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        Path path = Paths.get(journalFile);
+        if (!Files.exists(path)) {
+            return;
+        }
+        List<Prescription> pending = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                pending.add(objectMapper.readValue(line, Prescription.class));
+            } catch (IOException e) {
+                // A torn last line from a crash mid-append; that request never got its response
+                System.err.println("Skipping unreadable prescription journal entry: " + e.getMessage());
+            }
+        }
+        // saveAll upserts by ID, so entries that were written just before the crash are not duplicated
+        for (int i = 0; i < pending.size(); i += batchSize) {
+            prescriptionRepository.saveAll(pending.subList(i, Math.min(i + batchSize, pending.size())));
+        }
+        if (!pending.isEmpty()) {
+            System.err.println("Replayed " + pending.size() + " journaled prescriptions.");
+        }
+    }
+}
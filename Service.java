@@ -2,20 +2,17 @@ package com.example.yourprojectname.service;
 
 import com.example.yourprojectname.dto.Login;
 import com.example.yourprojectname.model.Admin;
-import com.example.yourprojectname.model.Appointment;
 import com.example.yourprojectname.model.Patient;
 import com.example.yourprojectname.repository.AdminRepository;
-import com.example.yourprojectname.repository.DoctorRepository;
 import com.example.yourprojectname.repository.PatientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalTime;
+import java.time.LocalDate;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -25,10 +22,10 @@ public class Service {
     // --- Repositories and Services ---
     private final TokenService tokenService;
     private final AdminRepository adminRepository;
-    private final DoctorRepository doctorRepository;
     private final PatientRepository patientRepository;
     private final DoctorService doctorService;
     private final PatientService patientService;
+    private final PrescriptionService prescriptionService;
 
     // DUMMY ADMIN CREDENTIALS for validation (REPLACE WITH REAL HASHING/STORAGE)
     private static final String DUMMY_ADMIN_USERNAME = "admin";
@@ -38,16 +35,16 @@ public class Service {
     public Service(
             TokenService tokenService,
             AdminRepository adminRepository,
-            DoctorRepository doctorRepository,
             PatientRepository patientRepository,
             DoctorService doctorService,
-            PatientService patientService) {
+            PatientService patientService,
+            PrescriptionService prescriptionService) {
         this.tokenService = tokenService;
         this.adminRepository = adminRepository;
-        this.doctorRepository = doctorRepository;
         this.patientRepository = patientRepository;
         this.doctorService = doctorService;
         this.patientService = patientService;
+        this.prescriptionService = prescriptionService;
     }
 
     // -------------------------------------------------------------------------
@@ -55,22 +52,37 @@ public class Service {
     // -------------------------------------------------------------------------
 
     /**
-     * Checks the validity of a token for a given user.
+     * Checks that the request was authenticated as a user with the given role.
+     * The token itself was already verified once by AuthenticationInterceptor.
      *
-     * @param token The token to be validated.
-     * @param user The user role ("admin", "doctor", "patient").
-     * @return An error response if the token is invalid or expired.
+     * @param principal The authenticated user of the request (null if the token was missing or invalid).
+     * @param user The required role ("admin", "doctor", "patient").
+     * @return An error response if the request is not authorized, or null if it is.
      */
-    public ResponseEntity<Map<String, String>> validateToken(String token, String user) {
-        // Assuming tokenService.validateToken returns an error map if invalid, or an empty map if valid.
-        Map<String, String> validationResult = tokenService.validateToken(token, user);
+    public ResponseEntity<Map<String, String>> authorize(AuthenticatedUser principal, String user) {
+        if (principal == null || !principal.hasRole(user)) {
+            return new ResponseEntity<>(
+                    Collections.singletonMap("error", "Token is invalid or expired."),
+                    HttpStatus.UNAUTHORIZED);
+        }
+        return null; // Authorized
+    }
 
-        if (!validationResult.isEmpty()) {
+    /**
+     * Logs a user out by revoking their token.
+     *
+     * @param token The token to revoke.
+     * @return A success message, or an error if the token is invalid or already expired.
+     */
+    public ResponseEntity<Map<String, String>> logout(String token) {
+        if (!tokenService.revokeToken(token)) {
             return new ResponseEntity<>(
                     Collections.singletonMap("error", "Token is invalid or expired."),
                     HttpStatus.UNAUTHORIZED);
         }
-        return null; // Return null (or an empty successful response) if valid
+        return new ResponseEntity<>(
+                Collections.singletonMap("message", "Logged out successfully."),
+                HttpStatus.OK);
     }
 
     /**
@@ -144,62 +156,34 @@ public class Service {
     // -------------------------------------------------------------------------
 
     /**
-     * Filters doctors based on name, specialty, and available time.
+     * Filters doctors based on name, specialty, and available time, one keyset page at a time.
+     * Any combination of filters may be null; with no filters this is the plain doctor directory.
      *
      * @param name The name of the doctor.
      * @param specialty The specialty of the doctor.
      * @param time The available time of the doctor ("AM" or "PM").
-     * @return A map containing the list of matching doctors.
+     * @param date The date the AM/PM availability applies to (today if null).
+     * @param afterId The cursor returned with the previous page (null for the first page).
+     * @param pageSize The requested page size (null for the default).
+     * @return A map containing the page of matching doctors and the cursor for the next page.
      */
-    public Map<String, Object> filterDoctor(String name, String specialty, String time) {
-        // Determine which DoctorService method to call based on input
-        if (name != null && specialty != null && time != null) {
-            return doctorService.filterDoctorsByNameSpecilityandTime(name, specialty, time);
-        } else if (name != null && specialty != null) {
-            return doctorService.filterDoctorByNameAndSpecility(name, specialty);
-        } else if (name != null && time != null) {
-            return doctorService.filterDoctorByNameAndTime(name, time);
-        } else if (specialty != null && time != null) {
-            return doctorService.filterDoctorByTimeAndSpecility(specialty, time);
-        } else if (specialty != null) {
-            return doctorService.filterDoctorBySpecility(specialty);
-        } else if (time != null) {
-            return doctorService.filterDoctorsByTime(time);
-        } else if (name != null) {
-            return doctorService.findDoctorByName(name); // Assuming findDoctorByName handles general name search
-        } else {
-            // Default: return all doctors
-            return Collections.singletonMap("doctors", doctorService.getDoctors());
-        }
+    public Map<String, Object> filterDoctor(String name, String specialty, String time, LocalDate date,
+                                            Long afterId, Integer pageSize) {
+        return doctorService.filterDoctors(name, specialty, time, date, afterId, pageSize);
     }
 
     /**
-     * Validates whether an appointment is available based on the doctor's schedule.
+     * Collects runtime statistics of the in-memory caches for the admin dashboard.
      *
-     * @param appointment The appointment to validate (containing doctorId and appointmentTime).
-     * @return 1 if valid, 0 if unavailable, -1 if doctor doesn't exist.
+     * @return A map of cache name to its statistics.
      */
-    public int validateAppointment(Appointment appointment) {
-        // 1. Check if the doctor exists
-        if (!doctorRepository.existsById(appointment.getDoctorId())) {
-            return -1; // Doctor doesn't exist
-        }
-
-        // 2. Check doctor's availability for the specific time slot
-        Long doctorId = appointment.getDoctorId();
-        LocalTime appointmentTime = appointment.getAppointmentTime().toLocalTime();
-        LocalDate appointmentDate = appointment.getAppointmentTime().toLocalDate();
-
-        // Get available slots for the day
-        List<String> availableSlots = doctorService.getDoctorAvailability(doctorId, appointmentDate);
-        String requiredSlot = appointmentTime.toString();
-
-        // 3. Check if the required time slot is in the available list
-        if (availableSlots.contains(requiredSlot)) {
-            return 1; // Appointment time is valid (available)
-        } else {
-            return 0; // Appointment time is unavailable (already booked or not a working slot)
-        }
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("doctorCatalog", doctorService.getCatalogStats());
+        stats.put("revokedTokens", tokenService.getRevokedTokenCount());
+        stats.put("prescriptions", prescriptionService.getCacheStats());
+        stats.put("prescriptionWriteBehind", prescriptionService.getWriteBehindStats());
+        return stats;
     }
 
     /**
@@ -221,23 +205,11 @@ public class Service {
      *
      * @param condition The condition ("past" or "future").
      * @param name The doctor's name.
-     * @param token The authentication token to identify the patient.
+     * @param patientId The ID of the authenticated patient.
      * @return The filtered list of patient appointments.
      */
-    public ResponseEntity<Map<String, Object>> filterPatient(String condition, String name, String token) {
-        Long patientId;
-
-        // 1. Authorization: Extract Patient ID from token
-        try {
-            patientId = tokenService.extractUserId(token); // Assuming this extracts the patient ID
-            if (patientId == null) {
-                 return new ResponseEntity<>(Collections.singletonMap("error", "Unauthorized access."), HttpStatus.UNAUTHORIZED);
-            }
-        } catch (Exception e) {
-            return new ResponseEntity<>(Collections.singletonMap("error", "Invalid or expired token."), HttpStatus.UNAUTHORIZED);
-        }
-
-        // 2. Determine which PatientService method to call
+    public ResponseEntity<Map<String, Object>> filterPatient(String condition, String name, Long patientId) {
+        // Determine which PatientService method to call
         if (condition != null && name != null) {
             // Filter by both condition and doctor name
             return patientService.filterByDoctorAndCondition(condition, name, patientId);
@@ -248,8 +220,8 @@ public class Service {
             // Filter only by doctor name
             return patientService.filterByDoctor(name, patientId);
         } else {
-            // Default: return all patient appointments (assuming getPatientAppointment handles this when filters are null/empty)
-            return patientService.getPatientAppointment(patientId, token);
+            // Default: return all patient appointments
+            return patientService.getPatientAppointment(patientId, patientId);
         }
     }
 }
@@ -0,0 +1,201 @@
+package com.example.yourprojectname.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Set of revoked token IDs (the JWT "jti" claim), checked on every token validation.
+ * A Bloom filter answers the common "not revoked" case without touching the exact set;
+ * only filter hits (revoked tokens and rare false positives) fall through to the map lookup.
+ * Entries are dropped once the token would have expired anyway (checked on revocations and
+ * on reads, at most every ten minutes), and every revocation is appended to a local file so
+ * logouts survive a restart.
+ * The filter is an AtomicLongArray: a bit set by revoke() is a volatile write, so a reader that
+ * sees it also sees the map entry put before it, and a token is never accepted after its logout returned.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final int HASH_FUNCTIONS = 4;
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    // Size of the Bloom filter in bits (rounded up to a multiple of 64)
+    @Value("${jwt.revocation.bloom-bits:1048576}")
+    private int bloomBits;
+
+    // Append-only file of "tokenId expiresAtMillis" lines
+    @Value("${jwt.revocation.file:revoked-tokens.log}")
+    private String revocationFile;
+
+    // Token ID -> expiration time in epoch millis; the authoritative set
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    // Bits are set atomically by revoke(); replaced wholesale on prune, so readers never see a half-built filter
+    private volatile AtomicLongArray bloom;
+    private volatile long nextPruneAt;
+
+    @PostConstruct
+    void load() {
+        long now = System.currentTimeMillis();
+        Path path = Paths.get(revocationFile);
+        if (Files.exists(path)) {
+            try {
+                for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                    String[] parts = line.trim().split(" ");
+                    if (parts.length == 2) {
+                        long expiresAt = Long.parseLong(parts[1]);
+                        if (expiresAt > now) {
+                            revoked.put(parts[0], expiresAt);
+                        }
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("Could not read token revocation file: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            rebuild(now);
+        }
+    }
+
+    /**
+     * Checks whether a token ID has been revoked.
+     * Lock-free except for the prune that is due every ten minutes; for tokens that were never
+     * revoked this is usually just a few bit tests.
+     *
+     * @param tokenId The token's ID.
+     * @return true if the token was revoked and has not expired yet.
+     */
+    public boolean isRevoked(String tokenId) {
+        long now = System.currentTimeMillis();
+        if (now >= nextPruneAt) {
+            // Expired entries must go even if nobody logs out
+            pruneIfDue(now);
+        }
+        if (!mightContain(bloom, tokenId)) {
+            return false;
+        }
+        Long expiresAt = revoked.get(tokenId);
+        return expiresAt != null && expiresAt > now;
+    }
+
+    /**
+     * Revokes a token ID until the given expiration time.
+     *
+     * @param tokenId The token's ID.
+     * @param expiresAt The token's expiration time in epoch millis.
+     */
+    public synchronized void revoke(String tokenId, long expiresAt) {
+        long now = System.currentTimeMillis();
+        if (expiresAt <= now || revoked.putIfAbsent(tokenId, expiresAt) != null) {
+            return;
+        }
+        addTo(bloom, tokenId);
+        append(tokenId + " " + expiresAt + System.lineSeparator());
+
+        pruneIfDue(now);
+    }
+
+    /**
+     * Returns the number of revoked tokens that have not expired yet.
+     */
+    public int size() {
+        return revoked.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // --- Bloom Filter and Persistence Helpers ---
+    // -------------------------------------------------------------------------
+
+    private synchronized void pruneIfDue(long now) {
+        // Re-checked under the monitor: concurrent readers that all saw the deadline prune only once
+        if (now >= nextPruneAt) {
+            rebuild(now);
+        }
+    }
+
+    /**
+     * Drops expired entries, rebuilds the Bloom filter from what remains and compacts the file.
+     * Must be called while holding the monitor.
+     */
+    private void rebuild(long now) {
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+
+        AtomicLongArray fresh = new AtomicLongArray(Math.max(1, (bloomBits + 63) / 64));
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : new HashMap<>(revoked).entrySet()) {
+            addTo(fresh, entry.getKey());
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        bloom = fresh;
+        nextPruneAt = now + PRUNE_INTERVAL_MILLIS;
+
+        try {
+            Path path = Paths.get(revocationFile);
+            Path tmp = Paths.get(revocationFile + ".tmp");
+            Files.write(tmp, lines, StandardCharsets.UTF_8);
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Could not compact token revocation file: " + e.getMessage());
+        }
+    }
+
+    private void append(String line) {
+        try {
+            Files.write(Paths.get(revocationFile), line.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Could not persist token revocation: " + e.getMessage());
+        }
+    }
+
+    private static void addTo(AtomicLongArray bits, String tokenId) {
+        long totalBits = (long) bits.length() * 64;
+        int h1 = tokenId.hashCode();
+        int h2 = mix(h1);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, totalBits);
+            long mask = 1L << bit;
+            bits.getAndAccumulate((int) (bit >>> 6), mask, (word, m) -> word | m);
+        }
+    }
+
+    private static boolean mightContain(AtomicLongArray bits, String tokenId) {
+        long totalBits = (long) bits.length() * 64;
+        int h1 = tokenId.hashCode();
+        int h2 = mix(h1);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, totalBits);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Second, independent hash for double hashing (murmur3 finalizer)
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h | 1;
+    }
+}
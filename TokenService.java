@@ -5,18 +5,25 @@ import com.example.yourprojectname.repository.DoctorRepository;
 import com.example.yourprojectname.repository.PatientRepository;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -31,32 +38,68 @@ public class TokenService implements TokenService {
     @Value("${jwt.secret}")
     private String secret;
 
+    // How long a verified token is trusted without re-checking signature and user existence
+    @Value("${jwt.cache.ttl-seconds:60}")
+    private long cacheTtlSeconds;
+
+    // Upper bound on the number of verified tokens kept in memory
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries;
+
+    // Signing key and parser are immutable and thread-safe; built once and swapped on key rotation
+    private volatile SecretKey signingKey;
+    private volatile JwtParser jwtParser;
+
+    // Verified tokens keyed by the SHA-256 hash of the raw token string
+    private final Map<String, VerifiedToken> tokenCache = new ConcurrentHashMap<>();
+
     private final AdminRepository adminRepository;
     private final DoctorRepository doctorRepository;
     private final PatientRepository patientRepository;
+    private final TokenRevocationList revocationList;
 
     public TokenService(
             AdminRepository adminRepository,
             DoctorRepository doctorRepository,
-            PatientRepository patientRepository) {
+            PatientRepository patientRepository,
+            TokenRevocationList revocationList) {
         this.adminRepository = adminRepository;
         this.doctorRepository = doctorRepository;
         this.patientRepository = patientRepository;
+        this.revocationList = revocationList;
     }
 
     // -------------------------------------------------------------------------
     // --- JWT Utility Helpers ---
     // -------------------------------------------------------------------------
 
+    @PostConstruct
+    void initSigningKey() {
+        reloadSigningKey(this.secret);
+    }
+
+    /**
+     * Rebuilds the signing key and parser from a new secret (e.g. after key rotation).
+     * Tokens verified with the previous key are dropped from the cache.
+     *
+     * @param newSecret The new HMAC secret.
+     */
+    public synchronized void reloadSigningKey(String newSecret) {
+        SecretKey key = Keys.hmacShaKeyFor(newSecret.getBytes(StandardCharsets.UTF_8));
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.signingKey = key;
+        this.secret = newSecret;
+        tokenCache.clear();
+    }
+
     private SecretKey getSigningKey() {
-        byte[] keyBytes = this.secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return signingKey;
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
     }
@@ -66,8 +109,91 @@ public class TokenService implements TokenService {
         return claimsResolver.apply(claims);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractClaim(token, Claims::getExpiration).before(new Date());
+    // -------------------------------------------------------------------------
+    // --- Verified Token Cache ---
+    // -------------------------------------------------------------------------
+
+    /**
+     * Result of a full token verification (signature, expiry, claims and user existence),
+     * kept for a short time so repeat requests with the same token skip the crypto and DB work.
+     */
+    private static final class VerifiedToken {
+        private final String tokenId;
+        private final Long userId;
+        private final String role;
+        private final boolean userExists;
+        private final long cachedUntil;
+
+        private VerifiedToken(String tokenId, Long userId, String role, boolean userExists, long cachedUntil) {
+            this.tokenId = tokenId;
+            this.userId = userId;
+            this.role = role;
+            this.userExists = userExists;
+            this.cachedUntil = cachedUntil;
+        }
+    }
+
+    private String hashToken(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Parses and verifies the token, then checks that its user still exists.
+     * Throws the underlying JWT exception if the token is invalid or expired.
+     */
+    private VerifiedToken verifyToken(String token, String tokenHash, long now) {
+        Claims claims = extractAllClaims(token);
+
+        Long userId = claims.get("userId", Long.class);
+        String tokenRole = claims.get("role", String.class);
+
+        boolean userExists = false;
+        if (userId != null && tokenRole != null) {
+            userExists = switch (tokenRole.toLowerCase()) {
+                case "admin" -> adminRepository.existsById(userId);
+                case "doctor" -> doctorRepository.existsByIdAndActiveTrue(userId);
+                case "patient" -> patientRepository.existsById(userId);
+                default -> false;
+            };
+        }
+
+        // Never trust the cached result beyond the token's own expiration
+        long cachedUntil = Math.min(now + TimeUnit.SECONDS.toMillis(cacheTtlSeconds), claims.getExpiration().getTime());
+        return new VerifiedToken(tokenIdOf(claims, tokenHash), userId, tokenRole, userExists, cachedUntil);
+    }
+
+    /**
+     * Returns the ID used to revoke a token: its "jti" claim, or the token hash for tokens
+     * issued before the claim was added.
+     */
+    private String tokenIdOf(Claims claims, String tokenHash) {
+        return claims.getId() != null ? claims.getId() : tokenHash;
+    }
+
+    private void cacheVerifiedToken(String key, VerifiedToken verified, long now) {
+        if (tokenCache.size() >= cacheMaxEntries) {
+            // Drop stale entries first; if the cache is still full, start over rather than grow unbounded
+            tokenCache.values().removeIf(v -> v.cachedUntil <= now);
+            if (tokenCache.size() >= cacheMaxEntries) {
+                tokenCache.clear();
+            }
+        }
+        tokenCache.put(key, verified);
+    }
+
+    /**
+     * Removes every cached token belonging to the given user, e.g. after the user is deleted.
+     *
+     * @param role The user's role ("admin", "doctor", "patient").
+     * @param userId The user's database ID.
+     */
+    public void evictUser(String role, Long userId) {
+        tokenCache.values().removeIf(v -> userId.equals(v.userId) && role.equalsIgnoreCase(v.role));
     }
     
     // -------------------------------------------------------------------------
@@ -91,6 +217,7 @@ public class TokenService implements TokenService {
 
         return Jwts.builder()
                 .setClaims(claims)
+                .setId(UUID.randomUUID().toString())
                 .setSubject(String.valueOf(userId))
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
@@ -98,6 +225,31 @@ public class TokenService implements TokenService {
                 .compact();
     }
 
+    /**
+     * Revokes a token (logout): it fails validation from now until it would have expired.
+     *
+     * @param token The token to revoke.
+     * @return true if the token was valid and is now revoked; false if it was invalid or already expired.
+     */
+    public boolean revokeToken(String token) {
+        try {
+            String tokenHash = hashToken(token);
+            Claims claims = extractAllClaims(token);
+            revocationList.revoke(tokenIdOf(claims, tokenHash), claims.getExpiration().getTime());
+            tokenCache.remove(tokenHash);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the number of revoked tokens that have not expired yet.
+     */
+    public int getRevokedTokenCount() {
+        return revocationList.size();
+    }
+
     /**
      * Extracts the user ID (stored as the token subject).
      */
@@ -135,43 +287,27 @@ public class TokenService implements TokenService {
     @Override
     public Map<String, String> validateToken(String token, String requiredRole) {
         try {
-            Claims claims = extractAllClaims(token);
-            
-            // 1. Check expiration
-            if (isTokenExpired(token)) {
-                return Collections.singletonMap("error", "Token expired.");
-            }
+            // 1. Verify the token, reusing a recent verification of the same token if available
+            VerifiedToken verified = getVerifiedToken(token);
 
-            Long userId = claims.get("userId", Long.class);
-            String tokenRole = claims.get("role", String.class);
+            // 2. Reject tokens revoked by logout (in-memory check, no database round-trip)
+            if (revocationList.isRevoked(verified.tokenId)) {
+                return Collections.singletonMap("error", "Token has been revoked.");
+            }
 
-            // 2. Check Role Match and User ID presence
-            if (userId == null || !tokenRole.equalsIgnoreCase(requiredRole)) {
+            // 3. Check Role Match and User ID presence
+            if (verified.userId == null || verified.role == null || !verified.role.equalsIgnoreCase(requiredRole)) {
                 return Collections.singletonMap("error", "Token has incorrect user ID or role.");
             }
 
-            // 3. Database Validation: Check if the user still exists
-            boolean userExists = switch (requiredRole.toLowerCase()) {
-                case "admin" -> adminRepository.existsById(userId);
-                case "doctor" -> doctorRepository.existsById(userId);
-                case "patient" -> patientRepository.existsById(userId);
-                default -> false;
-            };
-
-            if (!userExists) {
+            // 4. Database Validation: Check if the user still exists
+            if (!verified.userExists) {
                 return Collections.singletonMap("error", "User associated with token does not exist.");
             }
-            
-            // If all checks pass, include user ID and role for downstream services and return an empty map
-            Map<String, String> successResult = new HashMap<>();
-            successResult.put("userId", String.valueOf(userId));
-            successResult.put("role", tokenRole);
-            
-            // Per the DashboardController logic: If not empty: Redirect to login page.
-            // But per the interface definition: Return an EMPTY Map if token is valid.
-            // We adjust to meet the interface/controller contract:
-            return Collections.emptyMap(); 
-            
+
+            // Per the interface definition: Return an EMPTY Map if token is valid.
+            return Collections.emptyMap();
+
         } catch (ExpiredJwtException e) {
             return Collections.singletonMap("error", "Token expired.");
         } catch (Exception e) {
@@ -179,4 +315,36 @@ public class TokenService implements TokenService {
             return Collections.singletonMap("error", "Invalid or malformed token.");
         }
     }
+
+    /**
+     * Verifies a token independently of any role and returns the user it belongs to.
+     * Runs the same checks as validateToken (signature, expiry, revocation, user existence).
+     *
+     * @param token The user's authentication token.
+     * @return The authenticated user, or null if the token is not valid.
+     */
+    public AuthenticatedUser authenticate(String token) {
+        try {
+            VerifiedToken verified = getVerifiedToken(token);
+            if (revocationList.isRevoked(verified.tokenId)
+                    || verified.userId == null || verified.role == null || !verified.userExists) {
+                return null;
+            }
+            return new AuthenticatedUser(verified.userId, verified.role.toLowerCase());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private VerifiedToken getVerifiedToken(String token) {
+        long now = System.currentTimeMillis();
+        String cacheKey = hashToken(token);
+        VerifiedToken verified = tokenCache.get(cacheKey);
+
+        if (verified == null || verified.cachedUntil <= now) {
+            verified = verifyToken(token, cacheKey, now);
+            cacheVerifiedToken(cacheKey, verified, now);
+        }
+        return verified;
+    }
 }
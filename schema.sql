@@ -0,0 +1,18 @@
+-- Smart Clinic: constraints the booking path relies on (see schema-design.md).
+-- Applied once on top of the tables Hibernate creates; MySQL 8.
+
+-- Doctors are soft-deleted, so every appointment keeps its doctor
+ALTER TABLE doctors
+    ADD COLUMN active BOOLEAN NOT NULL DEFAULT TRUE;
+
+-- A slot is held by at most one non-cancelled appointment per doctor.
+-- Cancelled rows get a NULL active_slot, and NULLs never collide in a unique key,
+-- so a cancelled slot can be booked again. AppointmentService treats a violation
+-- of uk_doctor_slot as "slot taken"; this key is what makes booking safe across instances.
+ALTER TABLE appointments
+    ADD COLUMN active_slot DATETIME
+        GENERATED ALWAYS AS (CASE WHEN status <> 2 THEN appointment_date END) STORED,
+    ADD CONSTRAINT uk_doctor_slot UNIQUE (doctor_id, active_slot);
+
+ALTER TABLE appointments
+    ADD CONSTRAINT fk_appointments_doctor FOREIGN KEY (doctor_id) REFERENCES doctors (doctor_id);